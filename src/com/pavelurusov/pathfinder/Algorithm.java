@@ -0,0 +1,22 @@
+package com.pavelurusov.pathfinder;
+
+/**
+ * Search algorithms supported by the pathfinder.
+ * Theta* and Lazy Theta* are any-angle variants of A*: a node can take the predecessor
+ * of its predecessor as its own if there is a line of sight between them,
+ * so the path isn't restricted to the 8 grid directions.
+ */
+
+public enum Algorithm { Dijkstra,
+                        Astar,
+                        ThetaStar,
+                        LazyThetaStar;
+
+    public boolean isAnyAngle() {
+        return this == ThetaStar || this == LazyThetaStar;
+    }
+
+    public boolean usesHeuristic() {
+        return this != Dijkstra;
+    }
+}
@@ -0,0 +1,363 @@
+package com.pavelurusov.pathfinder;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Headless command line runner for benchmarks and regression checks.
+ * Runs every query of one or more scenario files (or the origin -> destination query
+ * of .pathmap files) with the selected settings, and writes the number of opened and settled
+ * nodes, path cost and search time of every query, followed by latency percentiles,
+ * as CSV or JSON. Scenarios can refer to .pathmap files, Moving AI .map files (see OctileMap),
+ * or .tiles files (see TileFile) for maps that are too big
+ * to load at once; their tiles are read as the searches reach them.
+ *
+ * Usage: BatchRunner [options] file.scen|file.pathmap ...
+ */
+
+public class BatchRunner {
+
+    private static final String USAGE = String.join("\n",
+            "Usage: BatchRunner [options] file.scen|file.pathmap ...",
+            "Options:",
+            "  --algorithm NAME   Dijkstra, Astar, ThetaStar or LazyThetaStar (default: Astar)",
+            "  --heuristic NAME   Manhattan, Quadratic, Euclidean or Diagonal (default: Euclidean)",
+            "  --diagonals BOOL   allow diagonal movement (default: true)",
+            "  --topology NAME    FourConnected, EightConnected or Hex, overrides --diagonals",
+            "  --size WxH         map size for .pathmap files (default: 75x50)",
+            "  --warmup N         run the whole batch N times before measuring (default: 0)",
+            "  --format FORMAT    csv or json (default: csv)",
+            "  --output FILE      write the results to FILE instead of the standard output",
+            "  --check            exit with status 1 if a path is longer than the optimal cost in the scenario");
+
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 100};
+
+    private Algorithm algorithm = Algorithm.Astar;
+    private Heuristic heuristic = Heuristic.Euclidean;
+    private boolean allowDiagonals = true;
+    private Topology selectedTopology = null; // --topology, null if it wasn't given
+    private Topology topology; // resolved after all the options have been read
+    private int columns = 75;
+    private int rows = 50;
+    private int warmup = 0;
+    private boolean json = false;
+    private boolean check = false;
+    private File output = null;
+    private final List<Scenario.Query> queries = new ArrayList<>();
+
+    // above this many cells a map isn't labeled, the labels and the flood fill stack take 8 bytes per cell
+    private static final long MAX_LABELED_CELLS = 1L << 26;
+
+    // maps are loaded and labeled once, and shared by all the queries that use them
+    private final Map<String, GridMap> maps = new HashMap<>();
+    private final Map<String, ComponentIndex> components = new HashMap<>();
+
+    // the results of one query
+    private static class Result {
+        final Scenario.Query query;
+        final SearchResult search;
+        final long nanos;
+
+        Result(Scenario.Query query, SearchResult search, long nanos) {
+            this.query = query;
+            this.search = search;
+            this.nanos = nanos;
+        }
+    }
+
+    public static void main(String[] args) {
+        BatchRunner runner = new BatchRunner();
+        try {
+            runner.parseArguments(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            List<Result> results = runner.run();
+            runner.write(results);
+            if (runner.check && !runner.allOptimal(results)) {
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private void parseArguments(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                addFile(new File(arg));
+                continue;
+            }
+            if (arg.equals("--check")) {
+                check = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--algorithm":
+                    algorithm = parseEnum(Algorithm.class, value);
+                    break;
+                case "--heuristic":
+                    heuristic = parseEnum(Heuristic.class, value);
+                    break;
+                case "--diagonals":
+                    allowDiagonals = Boolean.parseBoolean(value);
+                    break;
+                case "--topology":
+                    selectedTopology = parseEnum(Topology.class, value);
+                    break;
+                case "--size":
+                    String[] size = value.toLowerCase().split("x");
+                    if (size.length != 2) {
+                        throw new IllegalArgumentException("Invalid map size: " + value);
+                    }
+                    columns = parseInt(size[0]);
+                    rows = parseInt(size[1]);
+                    break;
+                case "--warmup":
+                    warmup = parseInt(value);
+                    break;
+                case "--format":
+                    if (!value.equalsIgnoreCase("csv") && !value.equalsIgnoreCase("json")) {
+                        throw new IllegalArgumentException("Unknown format: " + value);
+                    }
+                    json = value.equalsIgnoreCase("json");
+                    break;
+                case "--output":
+                    output = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (queries.isEmpty()) {
+            throw new IllegalArgumentException("No queries to run");
+        }
+        // --topology overrides --diagonals, whatever the order
+        topology = selectedTopology != null ? selectedTopology : Topology.of(allowDiagonals);
+        if (algorithm.isAnyAngle() && topology.isHex()) {
+            throw new IllegalArgumentException(algorithm + " needs a square grid");
+        }
+    }
+
+    private void addFile(File file) throws IOException {
+        if (file.getName().endsWith(".pathmap")) {
+            MapFile map = MapFile.load(file, columns, rows);
+            if (map.getOrigin() == null || map.getDestination() == null) {
+                throw new IOException(file + ": origin or destination is missing");
+            }
+            // the size is only known after all the options have been read
+            queries.add(new Scenario.Query(0, file, -1, -1, map.getOrigin(), map.getDestination(), 0));
+        } else {
+            queries.addAll(Scenario.load(file).getQueries());
+        }
+    }
+
+    private List<Result> run() throws IOException {
+        for (int i = 0; i < warmup; i++) {
+            runOnce();
+        }
+        return runOnce();
+    }
+
+    private List<Result> runOnce() throws IOException {
+        List<Result> results = new ArrayList<>();
+        for (Scenario.Query query : queries) {
+            GridMap map = map(query);
+            ComponentIndex index = components.get(key(query));
+            Node origin = query.getOrigin();
+            Node destination = query.getDestination();
+            long start = System.nanoTime();
+            SearchResult result;
+            // same as the visualiser: don't search for a path that can't exist
+            if (index != null && !index.connected(origin.getX(), origin.getY(), destination.getX(), destination.getY())) {
+                result = new SearchResult(Collections.emptyList(), 0, 0);
+            } else {
+                result = new GridSearch(map, algorithm, heuristic, topology).find(origin, destination);
+            }
+            long nanos = System.nanoTime() - start;
+            results.add(new Result(query, result, nanos));
+        }
+        return results;
+    }
+
+    private GridMap map(Scenario.Query query) throws IOException {
+        String key = key(query);
+        GridMap map = maps.get(key);
+        if (map == null) {
+            File file = query.getMapFile();
+            // labeling reads every cell, which would page in the whole of a .tiles file
+            boolean paged = file.getName().endsWith(".tiles");
+            if (paged) {
+                map = TileFile.open(file);
+            } else if (file.getName().endsWith(".map")) {
+                map = OctileMap.load(file);
+            } else if (file.getName().endsWith(".pathmap")) {
+                map = MapFile.load(file, columns(query), rows(query)).getBlockedMap();
+            } else {
+                throw new IOException(file + ": unknown map format, expected .pathmap, .map or .tiles");
+            }
+            // .map and .tiles files know their size, it has to agree with the scenario
+            if (query.getColumns() > 0 && (map.getColumns() != query.getColumns() || map.getRows() != query.getRows())) {
+                throw new IOException(file + " is " + map.getColumns() + "x" + map.getRows()
+                        + ", but the scenario says " + query.getColumns() + "x" + query.getRows());
+            }
+            maps.put(key, map);
+            if (!paged && (long) map.getColumns() * map.getRows() <= MAX_LABELED_CELLS) {
+                components.put(key, new ComponentIndex(map, topology.getComponentTopology()));
+            }
+        }
+        return map;
+    }
+
+    private String key(Scenario.Query query) {
+        return query.getMapFile().getAbsolutePath() + ":" + columns(query) + "x" + rows(query);
+    }
+
+    private int columns(Scenario.Query query) {
+        return query.getColumns() > 0 ? query.getColumns() : columns;
+    }
+
+    private int rows(Scenario.Query query) {
+        return query.getRows() > 0 ? query.getRows() : rows;
+    }
+
+    // a path is fine if it's no longer than the known optimal cost (allowing for rounding)
+    private boolean allOptimal(List<Result> results) {
+        boolean ok = true;
+        for (Result r : results) {
+            double optimal = r.query.getOptimalCost();
+            if (optimal > 0 && (!r.search.isFound() || r.search.getCost() > optimal + 1e-4)) {
+                System.err.println("Suboptimal: " + describe(r.query) + ", cost " + r.search.getCost()
+                        + ", optimal " + optimal);
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    private void write(List<Result> results) throws IOException {
+        long[] latencies = new long[results.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = results.get(i).nanos;
+        }
+        Arrays.sort(latencies);
+        Writer writer = output == null ? new OutputStreamWriter(System.out) : new FileWriter(output);
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(writer))) {
+            if (json) {
+                writeJson(out, results, latencies);
+            } else {
+                writeCsv(out, results, latencies);
+            }
+        }
+    }
+
+    private void writeCsv(PrintWriter out, List<Result> results, long[] latencies) {
+        out.println("map,bucket,origin_x,origin_y,destination_x,destination_y,optimal_cost,"
+                + "found,cost,waypoints,opened,settled,time_us");
+        for (Result r : results) {
+            Scenario.Query q = r.query;
+            out.println(csvField(q.getMapFile().getName()) + "," + q.getBucket() + ","
+                    + q.getOrigin().getX() + "," + q.getOrigin().getY() + ","
+                    + q.getDestination().getX() + "," + q.getDestination().getY() + ","
+                    + format(q.getOptimalCost()) + "," + r.search.isFound() + ","
+                    + (r.search.isFound() ? format(r.search.getCost()) : "") + ","
+                    + r.search.getPath().size() + "," + r.search.getOpened() + "," + r.search.getSettled() + ","
+                    + format(r.nanos / 1e3));
+        }
+        out.println();
+        out.println("percentile,time_us");
+        for (double p : PERCENTILES) {
+            out.println(format(p) + "," + format(percentile(latencies, p) / 1e3));
+        }
+    }
+
+    private void writeJson(PrintWriter out, List<Result> results, long[] latencies) {
+        out.println("{");
+        out.println("  \"algorithm\": \"" + algorithm + "\",");
+        out.println("  \"heuristic\": \"" + heuristic + "\",");
+        out.println("  \"diagonals\": " + (topology == Topology.EightConnected) + ",");
+        out.println("  \"topology\": \"" + topology + "\",");
+        out.println("  \"queries\": [");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            Scenario.Query q = r.query;
+            out.println("    {\"map\": \"" + jsonString(q.getMapFile().getName()) + "\", \"bucket\": " + q.getBucket()
+                    + ", \"origin\": [" + q.getOrigin().getX() + ", " + q.getOrigin().getY() + "]"
+                    + ", \"destination\": [" + q.getDestination().getX() + ", " + q.getDestination().getY() + "]"
+                    + ", \"optimal_cost\": " + format(q.getOptimalCost())
+                    + ", \"found\": " + r.search.isFound()
+                    + ", \"cost\": " + (r.search.isFound() ? format(r.search.getCost()) : "null")
+                    + ", \"waypoints\": " + r.search.getPath().size()
+                    + ", \"opened\": " + r.search.getOpened()
+                    + ", \"settled\": " + r.search.getSettled()
+                    + ", \"time_us\": " + format(r.nanos / 1e3) + "}"
+                    + (i < results.size() - 1 ? "," : ""));
+        }
+        out.println("  ],");
+        out.println("  \"latency_us\": {");
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            out.println("    \"p" + format(PERCENTILES[i]) + "\": " + format(percentile(latencies, PERCENTILES[i]) / 1e3)
+                    + (i < PERCENTILES.length - 1 ? "," : ""));
+        }
+        out.println("  }");
+        out.println("}");
+    }
+
+    // nearest-rank percentile of a sorted array
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+    }
+
+    private static String describe(Scenario.Query q) {
+        return q.getMapFile().getName() + " [" + q.getOrigin().getX() + "," + q.getOrigin().getY() + "] -> ["
+                + q.getDestination().getX() + "," + q.getDestination().getY() + "]";
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value)) {
+            return String.valueOf((long) value);
+        }
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private static String csvField(String value) {
+        if (value.contains(",") || value.contains("\"")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private static String jsonString(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        for (E e : type.getEnumConstants()) {
+            if (e.name().equalsIgnoreCase(value)) {
+                return e;
+            }
+        }
+        throw new IllegalArgumentException("Unknown " + type.getSimpleName().toLowerCase() + ": " + value);
+    }
+}
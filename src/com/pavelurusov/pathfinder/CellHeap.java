@@ -0,0 +1,106 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of cell (or slot) numbers ordered by their cost, with O(log n) decrease-key.
+ * Grows as needed. Keeps the hot search loops free of Node objects and boxing.
+ */
+
+class CellHeap {
+    private int[] heap; // cells in heap order
+    private int[] position; // position of every cell in the heap, -1 if it isn't there
+    private double[] cost;
+    private int size = 0;
+
+    CellHeap(int capacity) {
+        capacity = Math.max(capacity, 16);
+        heap = new int[capacity];
+        position = new int[capacity];
+        cost = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int cell) {
+        return cell < position.length && position[cell] != -1;
+    }
+
+    void add(int cell, double c) {
+        if (cell >= position.length) {
+            grow(cell + 1);
+        }
+        cost[cell] = c;
+        heap[size] = cell;
+        position[cell] = size;
+        siftUp(size++);
+    }
+
+    // lowers the cost of a cell that's already in the heap
+    void decrease(int cell, double c) {
+        cost[cell] = c;
+        siftUp(position[cell]);
+    }
+
+    int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void grow(int capacity) {
+        int oldLength = position.length;
+        int length = Math.max(capacity, oldLength * 2);
+        heap = Arrays.copyOf(heap, length);
+        cost = Arrays.copyOf(cost, length);
+        position = Arrays.copyOf(position, length);
+        Arrays.fill(position, oldLength, length, -1);
+    }
+
+    private void siftUp(int i) {
+        int cell = heap[i];
+        double c = cost[cell];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (cost[heap[parent]] <= c) {
+                break;
+            }
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = cell;
+        position[cell] = i;
+    }
+
+    private void siftDown(int i) {
+        int cell = heap[i];
+        double c = cost[cell];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && cost[heap[child + 1]] < cost[heap[child]]) {
+                child++;
+            }
+            if (cost[heap[child]] >= c) {
+                break;
+            }
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = cell;
+        position[cell] = i;
+    }
+}
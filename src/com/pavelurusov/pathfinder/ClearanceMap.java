@@ -0,0 +1,141 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * True clearance map: for every cell it stores the size of the largest obstacle-free square
+ * that has this cell as its top left corner (0 for blocked cells).
+ * An agent that occupies size x size cells and is anchored by its top left cell
+ * can stand at x,y if getClearance(x, y) >= size, which is a single array lookup,
+ * the same as checking whether a cell is blocked.
+ *
+ * Clearance is capped at a limit, the size of the largest agent that will ask: a square larger
+ * than that answers no more questions than one of exactly that size. The cap is what keeps edits
+ * cheap. Without it, unblocking one cell can change the clearance of every cell above and to
+ * the left of it; with it, only the cells of the limit x limit block that ends at the edit can change.
+ */
+
+public class ClearanceMap {
+    private final int columns, rows;
+    private final int limit;
+    private final boolean[] blocked;
+    private final int[] clearance;
+
+    public ClearanceMap(int columns, int rows, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The clearance limit must be at least 1");
+        }
+        this.columns = columns;
+        this.rows = rows;
+        this.limit = limit;
+        blocked = new boolean[columns * rows];
+        clearance = new int[columns * rows];
+        rebuild();
+    }
+
+    // computes the clearance of an existing map, for example a snapshot that a search is going to use
+    public ClearanceMap(GridMap map, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The clearance limit must be at least 1");
+        }
+        this.columns = map.getColumns();
+        this.rows = map.getRows();
+        this.limit = limit;
+        blocked = new boolean[columns * rows];
+        clearance = new int[columns * rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+                blocked[y * columns + x] = map.isBlocked(x, y);
+            }
+        }
+        rebuild();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    // the clearance of x,y, but never more than the limit
+    public int getClearance(int x, int y) {
+        if (x < 0 || y < 0 || x >= columns || y >= rows) {
+            return 0;
+        }
+        return clearance[y * columns + x];
+    }
+
+    // returns true if an agent of the given size can stand at x,y,
+    // the size can't be larger than the limit
+    public boolean fits(int x, int y, int size) {
+        if (size > limit) {
+            throw new IllegalArgumentException("Agent size " + size + " exceeds the clearance limit " + limit);
+        }
+        return getClearance(x, y) >= size;
+    }
+
+    public void block(int x, int y) {
+        update(x, y, true);
+    }
+
+    public void unblock(int x, int y) {
+        update(x, y, false);
+    }
+
+    public void clear() {
+        Arrays.fill(blocked, false);
+        rebuild();
+    }
+
+    // computes the whole map in one pass, starting from the bottom right corner
+    private void rebuild() {
+        for (int y = rows - 1; y >= 0; y--) {
+            for (int x = columns - 1; x >= 0; x--) {
+                clearance[y * columns + x] = compute(x, y);
+            }
+        }
+    }
+
+    // The clearance of a cell only depends on the cells to the right of it and below it,
+    // so an edit at x,y can only change the cells above and to the left of it, and with the cap
+    // only those less than limit cells away: the edited cell is outside of every larger square.
+    // The rows are swept upwards, and the sweep stops as soon as a row doesn't change.
+    private void update(int x, int y, boolean isBlocked) {
+        if (x < 0 || y < 0 || x >= columns || y >= rows || blocked[y * columns + x] == isBlocked) {
+            return;
+        }
+        blocked[y * columns + x] = isBlocked;
+        // leftmost column that changed in the row below, columns if nothing changed
+        int changedBelow = columns;
+        int top = Math.max(0, y - limit + 1);
+        int left = Math.max(0, x - limit + 1);
+        for (int row = y; row >= top; row--) {
+            int changedHere = columns;
+            for (int column = x; column >= left; column--) {
+                // nothing to the right of this cell or below it has changed, so neither has this cell
+                boolean dirty = (row == y && column == x) || column + 1 >= changedBelow
+                        || changedHere == column + 1;
+                if (!dirty) {
+                    break;
+                }
+                int value = compute(column, row);
+                if (value != clearance[row * columns + column]) {
+                    clearance[row * columns + column] = value;
+                    changedHere = column;
+                }
+            }
+            if (changedHere == columns) {
+                return;
+            }
+            changedBelow = changedHere;
+        }
+    }
+
+    private int compute(int x, int y) {
+        if (blocked[y * columns + x]) {
+            return 0;
+        }
+        int right = getClearance(x + 1, y);
+        int down = getClearance(x, y + 1);
+        int diagonal = getClearance(x + 1, y + 1);
+        return Math.min(limit, 1 + Math.min(right, Math.min(down, diagonal)));
+    }
+}
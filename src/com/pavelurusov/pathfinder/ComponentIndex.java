@@ -0,0 +1,185 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * Connected-component labeling of the free cells of the map.
+ * Two cells with the same label are connected, two cells with different labels are not,
+ * so "is there a path at all?" can be answered in O(1) before any search starts.
+ * Diagonal moves are never allowed to cut corners, which means that every diagonal move
+ * can be replaced by two orthogonal ones, so square grids are labeled with 4-connectivity
+ * regardless of whether diagonal movement is allowed (see Topology.getComponentTopology).
+ * Hex grids are labeled with their six neighbours.
+ *
+ * Adding a wall can split a component, and finding out whether it did means flooding the
+ * component, which costs O(size of the component). So block() only remembers the neighbours
+ * of the new wall, and the affected components are re-flooded once, on the next connected() query,
+ * however many walls were added in between. unblock() merges the components around the cell,
+ * which costs O(size of the merged components).
+ * Updates and queries must not run at the same time, and the first query after an update
+ * counts as part of the update because it does the pending relabeling. After that, queries
+ * only read the labels and can be made from several threads (DistanceMatrix does).
+ */
+
+public class ComponentIndex {
+    private static final int BLOCKED = -1;
+
+    private final int columns, rows;
+    private final Topology topology;
+    private final int[] labels; // component label for every cell, BLOCKED for walls
+    private final int[] stack; // scratch space for the flood fill
+    private int nextLabel = 0;
+
+    // neighbours of the walls added since the last query, and the label they had back then:
+    // pending[2 * i] is the cell, pending[2 * i + 1] the label
+    private int[] pending = new int[16];
+    private int pendingCount = 0;
+
+    public ComponentIndex(int columns, int rows) {
+        this(columns, rows, Topology.FourConnected);
+    }
+
+    public ComponentIndex(int columns, int rows, Topology topology) {
+        this.columns = columns;
+        this.rows = rows;
+        this.topology = topology;
+        labels = new int[columns * rows];
+        stack = new int[columns * rows];
+        // an empty map is one big component
+        Arrays.fill(labels, nextLabel++);
+    }
+
+    // labels an existing map from scratch, one flood fill per component
+    public ComponentIndex(GridMap map) {
+        this(map, Topology.FourConnected);
+    }
+
+    public ComponentIndex(GridMap map, Topology topology) {
+        this.columns = map.getColumns();
+        this.rows = map.getRows();
+        this.topology = topology;
+        labels = new int[columns * rows];
+        stack = new int[columns * rows];
+        int free = BLOCKED - 1; // temporary label for free cells that haven't been reached yet
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+                labels[y * columns + x] = map.isBlocked(x, y) ? BLOCKED : free;
+            }
+        }
+        for (int cell = 0; cell < labels.length; cell++) {
+            if (labels[cell] == free) {
+                fill(cell, free, nextLabel++);
+            }
+        }
+    }
+
+    // returns true if both cells are free and belong to the same component
+    public boolean connected(int x1, int y1, int x2, int y2) {
+        if (!inBounds(x1, y1) || !inBounds(x2, y2)) {
+            return false;
+        }
+        if (pendingCount > 0) {
+            relabel();
+        }
+        int label = labels[y1 * columns + x1];
+        return label != BLOCKED && label == labels[y2 * columns + x2];
+    }
+
+    public boolean isBlocked(int x, int y) {
+        return !inBounds(x, y) || labels[y * columns + x] == BLOCKED;
+    }
+
+    // adding a wall can split the component it was part of, so every free neighbour
+    // will be flooded with a fresh label if it still carries the old one at the next query
+    public void block(int x, int y) {
+        if (isBlocked(x, y)) {
+            return;
+        }
+        int cell = y * columns + x;
+        int oldLabel = labels[cell];
+        labels[cell] = BLOCKED;
+        Topology.Moves moves = topology.moves(y);
+        for (int i = 0; i < moves.count; i++) {
+            int n = neighbour(cell, moves, i);
+            if (n != -1 && labels[n] == oldLabel) {
+                if (2 * pendingCount == pending.length) {
+                    pending = Arrays.copyOf(pending, pending.length * 2);
+                }
+                pending[2 * pendingCount] = n;
+                pending[2 * pendingCount + 1] = oldLabel;
+                pendingCount++;
+            }
+        }
+        // don't let the list grow beyond the size of the map if nobody asks
+        if (pendingCount > labels.length) {
+            relabel();
+        }
+    }
+
+    // removing a wall merges all the components around it into one
+    public void unblock(int x, int y) {
+        if (!inBounds(x, y) || !isBlocked(x, y)) {
+            return;
+        }
+        // the labels around the cell have to be right before they are merged
+        relabel();
+        int cell = y * columns + x;
+        int label = nextLabel++;
+        labels[cell] = label;
+        Topology.Moves moves = topology.moves(y);
+        for (int i = 0; i < moves.count; i++) {
+            int n = neighbour(cell, moves, i);
+            if (n != -1 && labels[n] != BLOCKED && labels[n] != label) {
+                fill(n, labels[n], label);
+            }
+        }
+    }
+
+    public void clear() {
+        pendingCount = 0;
+        nextLabel = 0;
+        Arrays.fill(labels, nextLabel++);
+    }
+
+    // floods the parts of the components split by the new walls with fresh labels; a part that has
+    // already been flooded from another neighbour doesn't carry the old label any more and is skipped
+    private void relabel() {
+        for (int i = 0; i < pendingCount; i++) {
+            int cell = pending[2 * i];
+            int oldLabel = pending[2 * i + 1];
+            if (labels[cell] == oldLabel) {
+                fill(cell, oldLabel, nextLabel++);
+            }
+        }
+        pendingCount = 0;
+    }
+
+    // relabels the component containing the start cell
+    private void fill(int start, int from, int to) {
+        int top = 0;
+        labels[start] = to;
+        stack[top++] = start;
+        while (top > 0) {
+            int cell = stack[--top];
+            Topology.Moves moves = topology.moves(cell / columns);
+            for (int i = 0; i < moves.count; i++) {
+                int n = neighbour(cell, moves, i);
+                if (n != -1 && labels[n] == from) {
+                    labels[n] = to;
+                    stack[top++] = n;
+                }
+            }
+        }
+    }
+
+    // returns the index of the i-th neighbour of the cell, or -1 if it's off the map
+    private int neighbour(int cell, Topology.Moves moves, int i) {
+        int x = cell % columns + moves.dx[i];
+        int y = cell / columns + moves.dy[i];
+        return inBounds(x, y) ? y * columns + x : -1;
+    }
+
+    private boolean inBounds(int x, int y) {
+        return x >= 0 && y >= 0 && x < columns && y < rows;
+    }
+}
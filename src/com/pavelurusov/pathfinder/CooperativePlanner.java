@@ -0,0 +1,357 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Windowed Hierarchical Cooperative A* (WHCA*) for many agents sharing the same map.
+ * Agents are planned one by one in priority order (the order of the list). Every agent
+ * searches in space and time, and reserves the cells it's going to occupy in a reservation
+ * table, so the agents planned after it steer around it.
+ * Plans only look `window` time steps ahead, after that everybody replans from where they are.
+ * Agents that are too far apart to meet within a window are independent, and their groups
+ * are planned in parallel.
+ * Every time step an agent either waits or makes one move of the topology, using the same rules
+ * as the single agent search (no corner cutting). Two agents can't be in the same cell at the same time,
+ * and can't swap places with each other.
+ */
+
+public class CooperativePlanner {
+    private final GridMap map;
+    private final Topology topology;
+    private final int window;
+    private final int columns;
+
+    public CooperativePlanner(GridMap map, boolean allowDiagonals, int window) {
+        this(map, Topology.of(allowDiagonals), window);
+    }
+
+    public CooperativePlanner(GridMap map, Topology topology, int window) {
+        this.map = map;
+        this.topology = topology;
+        this.window = Math.max(window, 1);
+        this.columns = map.getColumns();
+    }
+
+    // Returns the position of every agent at every time step, starting with the origins.
+    // All the lists have the same length. Agents that can't reach their destination stay where they are.
+    public List<List<Node>> plan(List<Node> origins, List<Node> destinations, int maxSteps) {
+        int n = origins.size();
+        int[] position = new int[n];
+        int[] goal = new int[n];
+        for (int i = 0; i < n; i++) {
+            Node origin = origins.get(i);
+            if (map.isBlocked(origin.getX(), origin.getY())) {
+                throw new IllegalArgumentException("Origin of agent " + i + " is blocked or outside of the map");
+            }
+            position[i] = cell(origin);
+            goal[i] = cell(destinations.get(i));
+        }
+
+        // true distances to the destinations on the map, ignoring the other agents, are used as the heuristic;
+        // they are found on demand by one reverse search per destination, shared by every agent going there
+        ComponentIndex components = new ComponentIndex(map, topology.getComponentTopology());
+        Map<Integer, ReverseSearch> searches = new HashMap<>();
+        ReverseSearch[] heuristic = new ReverseSearch[n];
+        for (int i = 0; i < n; i++) {
+            Node origin = origins.get(i);
+            Node destination = destinations.get(i);
+            if (!components.connected(origin.getX(), origin.getY(), destination.getX(), destination.getY())) {
+                // can't get there, so stay put
+                goal[i] = position[i];
+            }
+            int from = position[i];
+            heuristic[i] = searches.computeIfAbsent(goal[i], g -> new ReverseSearch(g, from));
+        }
+
+        List<List<Node>> paths = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            paths.add(new ArrayList<>());
+            paths.get(i).add(node(position[i]));
+        }
+
+        for (int time = 0; time < maxSteps && !allArrived(position, goal); time += window) {
+            int start = time;
+            int[][] steps = new int[n][];
+            independentGroups(position).parallelStream().forEach(group -> {
+                ReservationTable table = new ReservationTable();
+                // until an agent is planned it stays where it is, so nobody may plan through it
+                for (int agent : group) {
+                    for (int t = 0; t <= window; t++) {
+                        table.reserve(position[agent], start + t, agent);
+                    }
+                }
+                for (int agent : group) {
+                    steps[agent] = search(agent, position[agent], goal[agent], heuristic[agent], start, table);
+                    for (int t = 0; t < window; t++) {
+                        if (steps[agent][t] == position[agent]) {
+                            continue;
+                        }
+                        table.release(position[agent], start + t + 1, agent);
+                        if (!table.reserve(steps[agent][t], start + t + 1, agent)) {
+                            throw new IllegalStateException("Agent " + agent + " was planned into a reserved cell");
+                        }
+                    }
+                }
+            });
+            for (int i = 0; i < n; i++) {
+                for (int t = 0; t < window; t++) {
+                    paths.get(i).add(node(steps[i][t]));
+                }
+                position[i] = steps[i][window - 1];
+            }
+        }
+        trim(paths, goal);
+        return paths;
+    }
+
+    // one state of the space-time search
+    private static class State implements Comparable<State> {
+        final int cell, time;
+        final double gCost, fCost;
+        final State predecessor;
+
+        State(int cell, int time, double gCost, double fCost, State predecessor) {
+            this.cell = cell;
+            this.time = time;
+            this.gCost = gCost;
+            this.fCost = fCost;
+            this.predecessor = predecessor;
+        }
+
+        @Override
+        public int compareTo(State s) {
+            return Double.compare(fCost, s.fCost);
+        }
+    }
+
+    // space-time A* for one agent over the next window, returns the cells it occupies at start+1 .. start+window
+    private int[] search(int agent, int from, int goal, ReverseSearch heuristic, int start, ReservationTable table) {
+        PriorityQueue<State> open = new PriorityQueue<>();
+        Set<Long> closed = new HashSet<>();
+        open.add(new State(from, start, 0, heuristic.distance(from), null));
+        while (!open.isEmpty()) {
+            State state = open.poll();
+            if (state.time == start + window) {
+                int[] steps = new int[window];
+                for (State s = state; s.time > start; s = s.predecessor) {
+                    steps[s.time - start - 1] = s.cell;
+                }
+                return steps;
+            }
+            if (!closed.add(((long) state.time << 32) | state.cell)) {
+                continue;
+            }
+            int x = state.cell % columns;
+            int y = state.cell / columns;
+            int time = state.time + 1;
+            Topology.Moves moves = topology.moves(y);
+            // the last "move" is waiting where it is
+            for (int i = 0; i <= moves.count; i++) {
+                boolean wait = i == moves.count;
+                if (!wait && !canMove(x, y, moves, i)) {
+                    continue;
+                }
+                int next = wait ? state.cell : state.cell + moves.dy[i] * columns + moves.dx[i];
+                int owner = table.owner(next, time);
+                if ((owner != -1 && owner != agent) || swaps(agent, state.cell, next, time, table)) {
+                    continue;
+                }
+                // waiting costs one step everywhere except at the destination
+                double stepCost = wait ? (next == goal ? 0 : 1) : moves.cost[i];
+                double g = state.gCost + stepCost;
+                open.add(new State(next, time, g, g + heuristic.distance(next), state));
+            }
+        }
+        // boxed in by the other agents, nothing to do but wait (the cell is still reserved for this agent)
+        int[] steps = new int[window];
+        Arrays.fill(steps, from);
+        return steps;
+    }
+
+    // Reverse Resumable A*: an A* search from a destination towards the origin of the first agent
+    // that goes there. Every cell it has closed already has its exact distance to the destination,
+    // the distance to any other cell is found by resuming the search until that cell is closed.
+    // The moves of every topology are symmetric, so searching backwards uses the same moves.
+    // State is only kept for the cells the search has touched. Agents planned in parallel
+    // can share a search, so the queries are synchronized.
+    private final class ReverseSearch {
+        private final int targetX, targetY;
+        private final LongIntTable slots = new LongIntTable(256);
+        private int count = 0;
+        private int[] cellOf = new int[256];
+        private double[] gCost = new double[256];
+        private boolean[] closed = new boolean[256];
+        private final CellHeap open = new CellHeap(256);
+
+        ReverseSearch(int destination, int target) {
+            targetX = target % columns;
+            targetY = target / columns;
+            int slot = slot(destination);
+            gCost[slot] = 0;
+            open.add(slot, estimate(destination));
+        }
+
+        // the cost of the cheapest path from the cell to the destination,
+        // Double.POSITIVE_INFINITY if there isn't one
+        synchronized double distance(int cell) {
+            int slot = slots.get(cell);
+            while (slot == -1 || !closed[slot]) {
+                if (open.isEmpty()) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                expand(open.poll());
+                slot = slots.get(cell);
+            }
+            return gCost[slot];
+        }
+
+        private void expand(int slot) {
+            closed[slot] = true;
+            int cell = cellOf[slot];
+            int x = cell % columns;
+            int y = cell / columns;
+            Topology.Moves moves = topology.moves(y);
+            for (int i = 0; i < moves.count; i++) {
+                if (!canMove(x, y, moves, i)) {
+                    continue;
+                }
+                int nextCell = cell + moves.dy[i] * columns + moves.dx[i];
+                int next = slot(nextCell);
+                if (closed[next]) {
+                    continue;
+                }
+                double g = gCost[slot] + moves.cost[i];
+                if (g < gCost[next]) {
+                    gCost[next] = g;
+                    if (open.contains(next)) {
+                        open.decrease(next, g + estimate(nextCell));
+                    } else {
+                        open.add(next, g + estimate(nextCell));
+                    }
+                }
+            }
+        }
+
+        // returns the slot of the cell, giving it a new one if necessary
+        private int slot(int cell) {
+            int slot = slots.putIfAbsent(cell, count);
+            if (slot != -1) {
+                return slot;
+            }
+            if (count == cellOf.length) {
+                int length = count * 2;
+                cellOf = Arrays.copyOf(cellOf, length);
+                gCost = Arrays.copyOf(gCost, length);
+                closed = Arrays.copyOf(closed, length);
+            }
+            cellOf[count] = cell;
+            gCost[count] = Double.POSITIVE_INFINITY;
+            return count++;
+        }
+
+        private double estimate(int cell) {
+            return topology.distance(cell % columns, cell / columns, targetX, targetY);
+        }
+    }
+
+    // returns true if moving from cell to next would swap places with another agent
+    private boolean swaps(int agent, int cell, int next, int time, ReservationTable table) {
+        if (cell == next) {
+            return false;
+        }
+        int other = table.owner(next, time - 1);
+        return other != -1 && other != agent && table.owner(cell, time) == other;
+    }
+
+    // returns true if the i-th move from x,y is possible
+    private boolean canMove(int x, int y, Topology.Moves moves, int i) {
+        int dx = moves.dx[i];
+        int dy = moves.dy[i];
+        if (moves.diagonal[i] && (map.isBlocked(x + dx, y) || map.isBlocked(x, y + dy))) {
+            return false;
+        }
+        return !map.isBlocked(x + dx, y + dy);
+    }
+
+    // Two agents can only meet within a window if they are at most 2 * window cells apart.
+    // Groups of agents that can meet are joined together (union-find), and the groups
+    // are returned with the agents in priority order.
+    private List<List<Integer>> independentGroups(int[] position) {
+        int n = position.length;
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                int dx = Math.abs(position[i] % columns - position[j] % columns);
+                int dy = Math.abs(position[i] / columns - position[j] / columns);
+                if (Math.max(dx, dy) <= 2 * window) {
+                    parent[root(parent, i)] = root(parent, j);
+                }
+            }
+        }
+        List<List<Integer>> groups = new ArrayList<>();
+        int[] groupOf = new int[n];
+        Arrays.fill(groupOf, -1);
+        for (int i = 0; i < n; i++) {
+            int root = root(parent, i);
+            if (groupOf[root] == -1) {
+                groupOf[root] = groups.size();
+                groups.add(new ArrayList<>());
+            }
+            groups.get(groupOf[root]).add(i);
+        }
+        return groups;
+    }
+
+    private static int root(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static boolean allArrived(int[] position, int[] goal) {
+        return Arrays.equals(position, goal);
+    }
+
+    // cuts off the time steps after everybody has arrived for good
+    private void trim(List<List<Node>> paths, int[] goal) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        int last = 0;
+        for (int i = 0; i < paths.size(); i++) {
+            List<Node> path = paths.get(i);
+            Node destination = node(goal[i]);
+            int arrived = path.size() - 1;
+            while (arrived > 0 && path.get(arrived - 1).equals(destination)) {
+                arrived--;
+            }
+            if (!path.get(path.size() - 1).equals(destination)) {
+                arrived = path.size() - 1;
+            }
+            last = Math.max(last, arrived);
+        }
+        for (List<Node> path : paths) {
+            path.subList(last + 1, path.size()).clear();
+        }
+    }
+
+    private int cell(Node n) {
+        return n.getY() * columns + n.getX();
+    }
+
+    private Node node(int cell) {
+        return new Node(cell % columns, cell / columns);
+    }
+}
@@ -0,0 +1,173 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the matrix of path costs between every pair of points on a map.
+ * Runs one Dijkstra search per source that stops as soon as all the targets are settled,
+ * instead of one search per pair. The map is copied into a PaddedGrid when the matrix
+ * is created, and the searches run in parallel on that copy. Each search only allocates
+ * state for the cells it visits.
+ * Movement rules are those of the topology: on square grids moves to adjacent cells cost 1,
+ * diagonal moves cost sqrt(2) and can't cut corners.
+ */
+
+public class DistanceMatrix {
+    private final PaddedGrid grid;
+    private final ComponentIndex components;
+
+    public DistanceMatrix(GridMap map, boolean allowDiagonals) {
+        this(map, Topology.of(allowDiagonals));
+    }
+
+    public DistanceMatrix(GridMap map, Topology topology) {
+        this.grid = new PaddedGrid(map, topology);
+        // used to skip the targets that can't be reached from a source
+        this.components = new ComponentIndex(map, topology.getComponentTopology());
+    }
+
+    // result[i][j] is the cost of the shortest path from points[i] to points[j],
+    // Double.POSITIVE_INFINITY if there is no path
+    public double[][] compute(List<Node> points) {
+        int n = points.size();
+        int[] cells = new int[n];
+        for (int i = 0; i < n; i++) {
+            Node p = points.get(i);
+            // points that are blocked or outside of the map can't be reached
+            int cell = grid.cell(p.getX(), p.getY());
+            cells[i] = cell == -1 || grid.isBlocked(cell) ? -1 : cell;
+        }
+        double[][] result = new double[n][];
+        IntStream.range(0, n).parallel().forEach(i -> result[i] = fromSource(points, cells, i));
+        return result;
+    }
+
+    // runs one search from points[source] and returns the row of the matrix
+    private double[] fromSource(List<Node> points, int[] cells, int source) {
+        int n = points.size();
+        double[] row = new double[n];
+        Arrays.fill(row, Double.POSITIVE_INFINITY);
+        if (cells[source] == -1) {
+            return row;
+        }
+        Node origin = points.get(source);
+        Search search = new Search(cells[source]);
+
+        // only the reachable targets have to be settled before the search can stop
+        int remaining = 0;
+        for (int j = 0; j < n; j++) {
+            Node target = points.get(j);
+            if (cells[j] != -1 && components.connected(origin.getX(), origin.getY(), target.getX(), target.getY())) {
+                int slot = search.slot(cells[j]);
+                if (!search.isTarget[slot]) {
+                    search.isTarget[slot] = true;
+                    remaining++;
+                }
+            }
+        }
+
+        search.run(remaining);
+
+        for (int j = 0; j < n; j++) {
+            if (cells[j] != -1) {
+                int slot = search.slots.get(cells[j]);
+                if (slot != -1 && search.settled[slot]) {
+                    row[j] = search.cost[slot];
+                }
+            }
+        }
+        return row;
+    }
+
+    // returns the cost of getting from the source to every cell of the map
+    // (indexed by y * columns + x), Double.POSITIVE_INFINITY for the cells that can't be reached
+    public double[] costsFrom(Node source) {
+        int columns = grid.getColumns();
+        double[] result = new double[columns * grid.getRows()];
+        Arrays.fill(result, Double.POSITIVE_INFINITY);
+        int start = grid.cell(source.getX(), source.getY());
+        if (start != -1 && !grid.isBlocked(start)) {
+            Search search = new Search(start);
+            // no targets, so the search runs until the whole component is settled
+            search.run(-1);
+            for (int slot = 0; slot < search.count; slot++) {
+                if (search.settled[slot]) {
+                    int cell = search.cellOf[slot];
+                    result[grid.y(cell) * columns + grid.x(cell)] = search.cost[slot];
+                }
+            }
+        }
+        return result;
+    }
+
+    // The state of one Dijkstra search. Every cell it touches gets a slot, and the state is kept
+    // in arrays indexed by slot that grow with the number of cells visited, not with the size
+    // of the map, so a search between points that are close together stays cheap on a large map.
+    private final class Search {
+        private final LongIntTable slots = new LongIntTable(256);
+        private int count = 0;
+        private int[] cellOf = new int[256];
+        private double[] cost = new double[256];
+        private boolean[] settled = new boolean[256];
+        private boolean[] isTarget = new boolean[256];
+        private final CellHeap open = new CellHeap(256);
+
+        Search(int start) {
+            int slot = slot(start);
+            cost[slot] = 0;
+            open.add(slot, 0);
+        }
+
+        // returns the slot of the cell, giving it a new one if necessary
+        int slot(int cell) {
+            int slot = slots.putIfAbsent(cell, count);
+            if (slot != -1) {
+                return slot;
+            }
+            if (count == cellOf.length) {
+                int length = count * 2;
+                cellOf = Arrays.copyOf(cellOf, length);
+                cost = Arrays.copyOf(cost, length);
+                settled = Arrays.copyOf(settled, length);
+                isTarget = Arrays.copyOf(isTarget, length);
+            }
+            cellOf[count] = cell;
+            cost[count] = Double.POSITIVE_INFINITY;
+            return count++;
+        }
+
+        // stops when the remaining number of targets drops to zero
+        void run(int remaining) {
+            while (remaining != 0 && !open.isEmpty()) {
+                int slot = open.poll();
+                settled[slot] = true;
+                if (isTarget[slot]) {
+                    remaining--;
+                }
+                int cell = cellOf[slot];
+                // the border is blocked, so the moves never leave the grid
+                int parity = grid.parity(cell);
+                for (int i = 0, moves = grid.moveCount(parity); i < moves; i++) {
+                    if (!grid.canMove(cell, parity, i)) {
+                        continue;
+                    }
+                    int next = slot(grid.target(cell, parity, i));
+                    if (settled[next]) {
+                        continue;
+                    }
+                    double nextCost = cost[slot] + grid.cost(parity, i);
+                    if (nextCost < cost[next]) {
+                        cost[next] = nextCost;
+                        if (open.contains(next)) {
+                            open.decrease(next, nextCost);
+                        } else {
+                            open.add(next, nextCost);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.pavelurusov.pathfinder;
+
+/**
+ * Read-only view of an obstacle map, as seen by the searches.
+ * Cells outside of the map always count as blocked.
+ */
+
+public interface GridMap {
+
+    int getColumns();
+
+    int getRows();
+
+    boolean isBlocked(int x, int y);
+}
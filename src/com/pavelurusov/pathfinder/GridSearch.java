@@ -0,0 +1,251 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Headless version of the search run by the visualiser. It runs to completion at full speed,
+ * keeps its state in primitive arrays instead of sets of nodes, and returns a SearchResult.
+ * Every cell the search touches gets a slot in those arrays, so memory grows with the area
+ * explored and not with the size of the map, which can be a huge TiledMap.
+ * Neighbours and step costs come from the topology; on square grids the rules are the same
+ * as in the visualiser: moves to adjacent cells cost 1, diagonal moves cost sqrt(2)
+ * and can't cut corners. Theta* and Lazy Theta* use line of sight checks to take shortcuts,
+ * which only makes sense on square grids.
+ * An optional SearchListener is told about every node that is opened, settled or re-parented.
+ */
+
+public class GridSearch {
+    private final GridMap map;
+    private final Algorithm algorithm;
+    private final Heuristic heuristic;
+    private final Topology topology;
+    private final int columns;
+    private SearchListener listener = null;
+
+    // per-search state, indexed by slot
+    private LongIntTable slots;
+    private long[] cellOf;
+    private double[] gCost;
+    private int[] predecessor;
+    private boolean[] settled;
+    private int destinationX, destinationY;
+
+    public GridSearch(GridMap map, Algorithm algorithm, Heuristic heuristic, boolean allowDiagonals) {
+        this(map, algorithm, heuristic, Topology.of(allowDiagonals));
+    }
+
+    public GridSearch(GridMap map, Algorithm algorithm, Heuristic heuristic, Topology topology) {
+        if (algorithm.isAnyAngle() && topology.isHex()) {
+            throw new IllegalArgumentException(algorithm + " needs a square grid");
+        }
+        this.map = map;
+        this.algorithm = algorithm;
+        this.heuristic = heuristic;
+        this.topology = topology;
+        this.columns = map.getColumns();
+    }
+
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    public SearchResult find(Node origin, Node destination) {
+        slots = new LongIntTable(1024);
+        cellOf = new long[1024];
+        gCost = new double[1024];
+        predecessor = new int[1024];
+        settled = new boolean[1024];
+        destinationX = destination.getX();
+        destinationY = destination.getY();
+        int opened = 0;
+        int settledCount = 0;
+
+        if (map.isBlocked(origin.getX(), origin.getY()) || map.isBlocked(destinationX, destinationY)) {
+            return new SearchResult(Collections.emptyList(), opened, settledCount);
+        }
+
+        long goal = cell(destinationX, destinationY);
+        int start = newSlot(cell(origin.getX(), origin.getY()));
+        CellHeap open = new CellHeap(1024);
+        gCost[start] = 0;
+        predecessor[start] = start; // the origin is its own predecessor
+        open.add(start, estimate(start));
+        opened++;
+        if (listener != null) {
+            listener.opened(cellOf[start], cellOf[start]);
+        }
+
+        while (!open.isEmpty()) {
+            int slot = open.poll();
+            if (algorithm == Algorithm.LazyThetaStar) {
+                fixPredecessor(slot);
+            }
+            settled[slot] = true;
+            settledCount++;
+            if (listener != null) {
+                listener.settled(cellOf[slot]);
+            }
+            if (cellOf[slot] == goal) {
+                return new SearchResult(path(slot), gCost[slot], opened, settledCount);
+            }
+            int x = x(cellOf[slot]);
+            int y = y(cellOf[slot]);
+            Topology.Moves moves = topology.moves(y);
+            for (int i = 0; i < moves.count; i++) {
+                if (!canMove(x, y, moves, i)) {
+                    continue;
+                }
+                long nextCell = cellOf[slot] + (long) moves.dy[i] * columns + moves.dx[i];
+                int next = slots.get(nextCell);
+                if (next != -1 && settled[next]) {
+                    continue;
+                }
+                if (next == -1) {
+                    next = newSlot(nextCell);
+                }
+                boolean isOpen = open.contains(next);
+                if (relax(slot, next, moves.cost[i])) {
+                    if (isOpen) {
+                        open.decrease(next, gCost[next] + estimate(next));
+                        if (listener != null) {
+                            listener.reparented(nextCell, cellOf[predecessor[next]]);
+                        }
+                    } else {
+                        open.add(next, gCost[next] + estimate(next));
+                        opened++;
+                        if (listener != null) {
+                            listener.opened(nextCell, cellOf[predecessor[next]]);
+                        }
+                    }
+                }
+            }
+        }
+        return new SearchResult(Collections.emptyList(), opened, settledCount);
+    }
+
+    // gives a newly discovered cell a slot, growing the state arrays if necessary
+    private int newSlot(long cell) {
+        int slot = slots.size();
+        slots.putIfAbsent(cell, slot);
+        if (slot == cellOf.length) {
+            int length = cellOf.length * 2;
+            cellOf = Arrays.copyOf(cellOf, length);
+            gCost = Arrays.copyOf(gCost, length);
+            predecessor = Arrays.copyOf(predecessor, length);
+            settled = Arrays.copyOf(settled, length);
+        }
+        cellOf[slot] = cell;
+        gCost[slot] = Double.POSITIVE_INFINITY;
+        settled[slot] = false;
+        return slot;
+    }
+
+    // returns true if the i-th move from x,y is possible
+    private boolean canMove(int x, int y, Topology.Moves moves, int i) {
+        int dx = moves.dx[i];
+        int dy = moves.dy[i];
+        // no diagonal moves across fences or around corners
+        if (moves.diagonal[i] && (map.isBlocked(x + dx, y) || map.isBlocked(x, y + dy))) {
+            return false;
+        }
+        return !map.isBlocked(x + dx, y + dy);
+    }
+
+    // tries to improve the cost of next via slot (a step that costs stepCost),
+    // returns true if it was improved
+    private boolean relax(int slot, int next, double stepCost) {
+        int parent = slot;
+        double g = gCost[slot] + stepCost;
+        if (algorithm.isAnyAngle()) {
+            int grandparent = predecessor[slot];
+            // Theta* only takes the shortcut if it can see next from the grandparent,
+            // Lazy Theta* takes it anyway and checks it when next gets settled
+            if (algorithm == Algorithm.LazyThetaStar || visible(grandparent, next)) {
+                parent = grandparent;
+                g = gCost[parent] + distance(parent, next);
+            }
+        }
+        if (g < gCost[next]) {
+            gCost[next] = g;
+            predecessor[next] = parent;
+            return true;
+        }
+        return false;
+    }
+
+    // Lazy Theta*: if the shortcut assumed when the cell was opened turns out to be blocked,
+    // attach the cell to the best of its already settled neighbours instead
+    private void fixPredecessor(int slot) {
+        if (visible(predecessor[slot], slot)) {
+            return;
+        }
+        int x = x(cellOf[slot]);
+        int y = y(cellOf[slot]);
+        gCost[slot] = Double.POSITIVE_INFINITY;
+        // square grids are symmetric, so the moves from the cell lead to the cells it can be reached from
+        Topology.Moves moves = topology.moves(y);
+        for (int i = 0; i < moves.count; i++) {
+            if (!canMove(x, y, moves, i)) {
+                continue;
+            }
+            int neighbour = slots.get(cellOf[slot] + (long) moves.dy[i] * columns + moves.dx[i]);
+            if (neighbour != -1 && settled[neighbour]) {
+                double g = gCost[neighbour] + moves.cost[i];
+                if (g < gCost[slot]) {
+                    gCost[slot] = g;
+                    predecessor[slot] = neighbour;
+                }
+            }
+        }
+        if (listener != null) {
+            listener.reparented(cellOf[slot], cellOf[predecessor[slot]]);
+        }
+    }
+
+    private boolean visible(int from, int to) {
+        return LineOfSight.clear(map, x(cellOf[from]), y(cellOf[from]), x(cellOf[to]), y(cellOf[to]));
+    }
+
+    // straight line distance for the shortcuts of the any-angle algorithms
+    private double distance(int from, int to) {
+        double dx = x(cellOf[from]) - x(cellOf[to]);
+        double dy = y(cellOf[from]) - y(cellOf[to]);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private double estimate(int slot) {
+        if (!algorithm.usesHeuristic()) {
+            return 0;
+        }
+        return topology.estimate(heuristic, x(cellOf[slot]), y(cellOf[slot]), destinationX, destinationY);
+    }
+
+    // reconstruct the path back from the destination
+    private List<Node> path(int goal) {
+        List<Node> path = new ArrayList<>();
+        int slot = goal;
+        while (predecessor[slot] != slot) {
+            path.add(new Node(x(cellOf[slot]), y(cellOf[slot])));
+            slot = predecessor[slot];
+        }
+        path.add(new Node(x(cellOf[slot]), y(cellOf[slot])));
+        Collections.reverse(path);
+        return path;
+    }
+
+    // cells are numbered row by row, as longs because a huge map can have more cells than an int can count
+    private long cell(int x, int y) {
+        return (long) y * columns + x;
+    }
+
+    private int x(long cell) {
+        return (int) (cell % columns);
+    }
+
+    private int y(long cell) {
+        return (int) (cell / columns);
+    }
+}
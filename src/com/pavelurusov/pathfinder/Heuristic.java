@@ -0,0 +1,29 @@
+package com.pavelurusov.pathfinder;
+
+/**
+ * Estimates of the cost of getting to the destination, given the horizontal (dx)
+ * and vertical (dy) distance to it.
+ */
+
+public enum Heuristic {
+                        Manhattan,
+                        Quadratic,
+                        Euclidean,
+                        Diagonal;
+
+    public double estimate(int distanceX, int distanceY) {
+        // doubles, so that the squares don't overflow on huge maps
+        double dx = Math.abs((double) distanceX);
+        double dy = Math.abs((double) distanceY);
+        switch(this) {
+            case Manhattan:
+                return dx + dy;
+            case Quadratic:
+                return dx * dx + dy * dy;
+            case Euclidean:
+                return Math.sqrt(dx * dx + dy * dy);
+            default: // Diagonal
+                return Math.max(dx, dy);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line of sight tests over the obstacle map, and path smoothing built on top of them.
+ * The line between the centres of two cells is traced with an integer supercover version
+ * of Bresenham's algorithm, which visits every cell the line touches. If the line goes exactly
+ * through the corner of a cell, both cells on the sides of that corner have to be free,
+ * which matches the "no corner cutting" rule for diagonal moves.
+ */
+
+public class LineOfSight {
+
+    private LineOfSight() {
+    }
+
+    // returns true if there are no obstacles between x0,y0 and x1,y1
+    public static boolean clear(GridMap map, int x0, int y0, int x1, int y1) {
+        return trace(map, x0, y0, x1, y1, null);
+    }
+
+    // returns all the cells touched by the line between x0,y0 and x1,y1
+    public static List<Node> cells(int x0, int y0, int x1, int y1) {
+        List<Node> cells = new ArrayList<>();
+        trace(null, x0, y0, x1, y1, cells);
+        return cells;
+    }
+
+    // String pulling: starting from the first waypoint, skip ahead to the furthest waypoint
+    // that is still directly visible, and repeat from there.
+    // Returns the remaining waypoints, including the first and the last one.
+    public static List<Node> smooth(GridMap map, List<Node> path) {
+        List<Node> smoothed = new ArrayList<>();
+        if (path.isEmpty()) {
+            return smoothed;
+        }
+        int anchor = 0;
+        smoothed.add(path.get(0));
+        while (anchor < path.size() - 1) {
+            int next = anchor + 1;
+            Node from = path.get(anchor);
+            for (int i = path.size() - 1; i > next; i--) {
+                Node to = path.get(i);
+                if (clear(map, from.getX(), from.getY(), to.getX(), to.getY())) {
+                    next = i;
+                    break;
+                }
+            }
+            smoothed.add(path.get(next));
+            anchor = next;
+        }
+        return smoothed;
+    }
+
+    // exact cost of a path made of straight segments between the waypoints
+    public static double pathCost(List<Node> path) {
+        double cost = 0;
+        for (int i = 1; i < path.size(); i++) {
+            cost += path.get(i - 1).distanceTo(path.get(i));
+        }
+        return cost;
+    }
+
+    // walks the line, stops early if map isn't null and a cell is blocked,
+    // and adds every visited cell to visited if it isn't null
+    private static boolean trace(GridMap map, int x0, int y0, int x1, int y1, List<Node> visited) {
+        int dx = Math.abs(x1 - x0);
+        int dy = Math.abs(y1 - y0);
+        int stepX = x1 > x0 ? 1 : -1;
+        int stepY = y1 > y0 ? 1 : -1;
+        int x = x0;
+        int y = y0;
+        // error > 0: the line leaves the cell through a vertical side,
+        // error < 0: through a horizontal side, error == 0: through a corner
+        int error = dx - dy;
+        dx *= 2;
+        dy *= 2;
+        for (int n = 1 + (dx + dy) / 2; n > 0; n--) {
+            if (map != null && map.isBlocked(x, y)) {
+                return false;
+            }
+            if (visited != null) {
+                visited.add(new Node(x, y));
+            }
+            if (error > 0) {
+                x += stepX;
+                error -= dy;
+            } else if (error < 0) {
+                y += stepY;
+                error += dx;
+            } else if (n > 1) {
+                if (map != null && (map.isBlocked(x + stepX, y) || map.isBlocked(x, y + stepY))) {
+                    return false;
+                }
+                x += stepX;
+                y += stepY;
+                error += dx - dy;
+                n--;
+            }
+        }
+        return true;
+    }
+}
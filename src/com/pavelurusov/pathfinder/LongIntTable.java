@@ -0,0 +1,110 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * Map from non-negative long keys to non-negative int values without an object per entry:
+ * an open addressing hash table with linear probing and Fibonacci hashing. Packed cell numbers,
+ * or (cell, time) pairs, are the keys; search slots or agents are the values.
+ * Entries are removed with backward shifting, so there are no tombstones to clean up.
+ */
+
+final class LongIntTable {
+    private static final long EMPTY = -1L;
+
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    // the capacity is rounded up to a power of two
+    LongIntTable(int capacity) {
+        int length = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+        keys = new long[length];
+        values = new int[length];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // returns the value of the key, or -1 if the key isn't in the table
+    int get(long key) {
+        int i = index(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+    // adds the key with the value unless the key is already there,
+    // returns the value it already had or -1 if it has been added
+    int putIfAbsent(long key, int value) {
+        if ((size + 1) * 2 > keys.length) { // keep the load factor under 0.5
+            grow();
+        }
+        int i = index(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & (keys.length - 1);
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        return -1;
+    }
+
+    // removes the key if it's in the table
+    void remove(long key) {
+        int mask = keys.length - 1;
+        int i = index(key);
+        while (keys[i] != key) {
+            if (keys[i] == EMPTY) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = EMPTY;
+        size--;
+        // move the following entries back so that no probe sequence is broken by the gap
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = index(keys[j]);
+            // the entry can fill the gap unless its home slot lies cyclically between the gap and itself
+            boolean between = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+            if (!between) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                keys[j] = EMPTY;
+                i = j;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int j = index(oldKeys[i]);
+                while (keys[j] != EMPTY) {
+                    j = (j + 1) & (keys.length - 1);
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private int index(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing
+        return (int) (hash >>> (64 - Integer.numberOfTrailingZeros(keys.length)));
+    }
+}
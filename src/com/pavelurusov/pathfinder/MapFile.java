@@ -0,0 +1,99 @@
+package com.pavelurusov.pathfinder;
+
+import java.io.*;
+
+/**
+ * Reads and writes .pathmap files. Every line of the file describes one node:
+ * "O,x,y" is the origin, "D,x,y" is the destination and "B,x,y" is a blocked node.
+ * Empty lines and blocked nodes outside of the map are skipped, any other line that can't be
+ * parsed is an error. The walls are loaded into a TiledMap.
+ */
+
+public class MapFile {
+    private Node origin;
+    private Node destination;
+    private final TiledMap blockedMap;
+
+    private MapFile(int columns, int rows) {
+        blockedMap = new TiledMap(columns, rows);
+    }
+
+    public Node getOrigin() {
+        return origin;
+    }
+
+    public Node getDestination() {
+        return destination;
+    }
+
+    // origin and destination are never blocked
+    public TiledMap getBlockedMap() {
+        return blockedMap;
+    }
+
+    public static MapFile load(File file, int columns, int rows) throws IOException {
+        MapFile map = new MapFile(columns, rows);
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String input;
+            int lineNumber = 0;
+            // reading the file line by line
+            while((input = br.readLine()) != null) {
+                lineNumber++;
+                input = input.trim();
+                if (input.isEmpty()) {
+                    continue;
+                }
+                // split the line using comma as a separator
+                String[] splitLine = input.split(",");
+                if (splitLine.length != 3) {
+                    throw new IOException(file + ", line " + lineNumber + ": expected type,x,y, found \"" + input + "\"");
+                }
+                int x, y;
+                try {
+                    x = Integer.parseInt(splitLine[1].trim());
+                    y = Integer.parseInt(splitLine[2].trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ", line " + lineNumber + ": " + e.getMessage());
+                }
+                switch (splitLine[0].trim()) {
+                    case "O": // origin
+                        map.origin = new Node(x, y);
+                        break;
+                    case "D": // destination
+                        map.destination = new Node(x, y);
+                        break;
+                    case "B": // blocked
+                        map.blockedMap.setBlocked(x, y, true);
+                        break;
+                    default:
+                        throw new IOException(file + ", line " + lineNumber + ": unknown node type \"" + splitLine[0] + "\"");
+                }
+            }
+        }
+        if (map.origin != null) {
+            map.blockedMap.setBlocked(map.origin.getX(), map.origin.getY(), false);
+        }
+        if (map.destination != null) {
+            map.blockedMap.setBlocked(map.destination.getX(), map.destination.getY(), false);
+        }
+        return map;
+    }
+
+    public static void save(File file, Node origin, Node destination, TiledMap blockedMap) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+            bw.write("O," + origin.getX() +"," + origin.getY() + "\n");
+            bw.write("D," + destination.getX() + "," + destination.getY() + "\n");
+            try {
+                blockedMap.forEachBlocked((x, y) -> {
+                    try {
+                        bw.write("B," + x + "," + y + "\n");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -69,6 +69,14 @@ public class Node implements Comparable<Node>, Serializable {
         return predecessor;
     }
 
+    // straight line distance between the centres of two nodes
+    public double distanceTo(Node n) {
+        // doubles, so that the squares don't overflow on huge maps
+        double dx = x - n.getX();
+        double dy = y - n.getY();
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
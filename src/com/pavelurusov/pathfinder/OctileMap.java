@@ -0,0 +1,95 @@
+package com.pavelurusov.pathfinder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Reads the .map files of the Moving AI benchmarks (https://movingai.com/benchmarks/formats.html):
+ * a header of "type octile", "height H", "width W" and "map", followed by H rows of W characters.
+ * '.', 'G' and 'S' are passable, '@', 'O', 'T' and 'W' are not. Anything else is an error.
+ */
+
+public class OctileMap {
+
+    private OctileMap() {
+    }
+
+    public static TiledMap load(File file) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            int columns = -1;
+            int rows = -1;
+            int lineNumber = 0;
+            String input;
+            // the header, up to the "map" line
+            while (true) {
+                input = br.readLine();
+                lineNumber++;
+                if (input == null) {
+                    throw new IOException(file + ": the \"map\" line is missing");
+                }
+                String[] fields = input.trim().split("\\s+");
+                if (fields[0].equals("map") && fields.length == 1) {
+                    break;
+                }
+                if (fields.length != 2) {
+                    throw new IOException(file + ", line " + lineNumber + ": can't parse \"" + input + "\"");
+                }
+                try {
+                    switch (fields[0]) {
+                        case "type":
+                            if (!fields[1].equals("octile")) {
+                                throw new IOException(file + ", line " + lineNumber + ": unsupported map type " + fields[1]);
+                            }
+                            break;
+                        case "height":
+                            rows = Integer.parseInt(fields[1]);
+                            break;
+                        case "width":
+                            columns = Integer.parseInt(fields[1]);
+                            break;
+                        default:
+                            throw new IOException(file + ", line " + lineNumber + ": unknown header field " + fields[0]);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ", line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+            if (columns <= 0 || rows <= 0) {
+                throw new IOException(file + ": the width or height is missing");
+            }
+
+            TiledMap map = new TiledMap(columns, rows);
+            for (int y = 0; y < rows; y++) {
+                input = br.readLine();
+                lineNumber++;
+                if (input == null) {
+                    throw new IOException(file + ": expected " + rows + " rows, found " + y);
+                }
+                if (input.length() != columns) {
+                    throw new IOException(file + ", line " + lineNumber + ": expected " + columns
+                            + " characters, found " + input.length());
+                }
+                for (int x = 0; x < columns; x++) {
+                    switch (input.charAt(x)) {
+                        case '.':
+                        case 'G':
+                        case 'S':
+                            break;
+                        case '@':
+                        case 'O':
+                        case 'T':
+                        case 'W':
+                            map.setBlocked(x, y, true);
+                            break;
+                        default:
+                            throw new IOException(file + ", line " + lineNumber + ": unknown terrain '"
+                                    + input.charAt(x) + "'");
+                    }
+                }
+            }
+            return map;
+        }
+    }
+}
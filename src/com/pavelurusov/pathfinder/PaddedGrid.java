@@ -0,0 +1,105 @@
+package com.pavelurusov.pathfinder;
+
+/**
+ * Dense copy of a map surrounded by a wall one cell thick, for searches that keep their state
+ * in arrays indexed by cell. Cells are numbered (y + 1) * stride + (x + 1), so every neighbour
+ * of a cell on the map has a valid index and is blocked if it's outside of the map:
+ * the search loops need no bounds checks. The moves of the topology are turned into
+ * offsets between cell numbers once, when the grid is built.
+ */
+
+final class PaddedGrid {
+    private final int columns, rows;
+    private final int stride;
+    private final boolean[] blocked;
+
+    // [row parity][move]: offsets of the target cell and of the two cells a diagonal move
+    // mustn't cut through; for the other moves both of those are the target itself,
+    // so every move can be checked the same way, without branching
+    private final int[][] target, sideA, sideB;
+    private final double[][] cost;
+
+    PaddedGrid(GridMap map, Topology topology) {
+        columns = map.getColumns();
+        rows = map.getRows();
+        stride = columns + 2;
+        blocked = new boolean[stride * (rows + 2)];
+        for (int y = -1; y <= rows; y++) {
+            for (int x = -1; x <= columns; x++) {
+                blocked[(y + 1) * stride + x + 1] = map.isBlocked(x, y);
+            }
+        }
+        target = new int[2][];
+        sideA = new int[2][];
+        sideB = new int[2][];
+        cost = new double[2][];
+        for (int parity = 0; parity < 2; parity++) {
+            Topology.Moves moves = topology.moves(parity);
+            target[parity] = new int[moves.count];
+            sideA[parity] = new int[moves.count];
+            sideB[parity] = new int[moves.count];
+            cost[parity] = moves.cost.clone();
+            for (int i = 0; i < moves.count; i++) {
+                int offset = moves.dy[i] * stride + moves.dx[i];
+                target[parity][i] = offset;
+                sideA[parity][i] = moves.diagonal[i] ? moves.dx[i] : offset;
+                sideB[parity][i] = moves.diagonal[i] ? moves.dy[i] * stride : offset;
+            }
+        }
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    // number of cells, including the border
+    int size() {
+        return blocked.length;
+    }
+
+    // -1 if x,y is outside of the map
+    int cell(int x, int y) {
+        if (x < 0 || y < 0 || x >= columns || y >= rows) {
+            return -1;
+        }
+        return (y + 1) * stride + x + 1;
+    }
+
+    int x(int cell) {
+        return cell % stride - 1;
+    }
+
+    int y(int cell) {
+        return cell / stride - 1;
+    }
+
+    boolean isBlocked(int cell) {
+        return blocked[cell];
+    }
+
+    // returns true if the i-th move from the cell is possible
+    boolean canMove(int cell, int parity, int i) {
+        return !(blocked[cell + target[parity][i]] | blocked[cell + sideA[parity][i]] | blocked[cell + sideB[parity][i]]);
+    }
+
+    // the parity of the row of the cell, which selects the moves on a hex grid
+    int parity(int cell) {
+        return y(cell) & 1;
+    }
+
+    int moveCount(int parity) {
+        return target[parity].length;
+    }
+
+    int target(int cell, int parity, int i) {
+        return cell + target[parity][i];
+    }
+
+    double cost(int parity, int i) {
+        return cost[parity][i];
+    }
+}
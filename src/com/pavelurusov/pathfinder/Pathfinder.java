@@ -42,8 +42,12 @@ public class Pathfinder extends Application {
     private Button saveButton;
     private Button loadButton;
     private Button odSwitchButton;
+    private Button saveTraceButton;
+    private Button loadTraceButton;
+    private Slider replaySlider;
     private RadioButton algoDijkstra;
     private RadioButton algoAstar;
+    private RadioButton algoThetaStar;
     private RadioButton speedFaster;
     private RadioButton speedSlower;
     private RadioButton quadraticRButton;
@@ -52,6 +56,11 @@ public class Pathfinder extends Application {
     private RadioButton diagonalRButton;
     private CheckBox diagonalsCheckBox;
     private CheckBox pathCorrectionCheckBox;
+    private CheckBox smoothPathCheckBox;
+    private CheckBox recordCheckBox;
+    private RadioButton size1RButton;
+    private RadioButton size2RButton;
+    private RadioButton size3RButton;
 
     // grid dimensions
     private final int columns = 75;
@@ -60,28 +69,32 @@ public class Pathfinder extends Application {
     // step counter
     private int stepCount = 0;
 
-    // algorithm parameters
-    private enum Algorithm { Dijkstra,
-                        Astar }
-
-    private enum Heuristic {
-                            Manhattan,
-                            Quadratic,
-                            Euclidean,
-                            Diagonal }
-
     // default values
     private Heuristic heuristic = Heuristic.Euclidean;
     private Algorithm algorithm = Algorithm.Astar;
-    private boolean allowDiagonals = true;
+    private Topology topology = Topology.EightConnected; // the visualiser only draws square grids
     private final double hWeight = 1d; // reserved for future use ;-)
 
     private BooleanProperty runningProperty = new SimpleBooleanProperty();
 
     private boolean pathCorrection = false;
 
+    // string pulling for the path that was found
+    private boolean smoothPath = false;
+
+    // the agent occupies agentSize x agentSize cells, the node is its top left cell
+    private int agentSize = 1;
+    // the largest agent size that can be selected, clearance is never computed beyond it
+    private static final int MAX_AGENT_SIZE = 3;
+
     private boolean isRunning = false;
 
+    // record mode: run the search at full speed, then replay its event log
+    private boolean recordMode = false;
+    private TraceReplay replay = null; // null if the search runs live
+    private byte[] traceLog = null; // the last recorded or loaded log
+    private boolean movingSlider = false; // true while the slider is moved by the replay itself
+
     // main loop
     private AnimationTimer timer;
     private double interval = 1e8; // default interval = 1/20th of a second
@@ -92,16 +105,45 @@ public class Pathfinder extends Application {
     private Node current = null;
 
     Set<Node> settledNodes;
-    Set<Node> blockedNodes;
+    // edits are published as new versions, a running search keeps the version it started with
+    VersionedMap blockedMap;
     Set<Node> unsettledNodes;
 
+    // connected components of the free cells, used to reject unreachable destinations
+    private ComponentIndex components;
+    // distance to the nearest obstacle, used to check whether larger agents fit
+    private ClearanceMap clearanceMap;
+    // the clearance of the map version the running search started with, null before the first search,
+    // so that walls drawn during the search don't change the map under its feet
+    private ClearanceMap searchClearance = null;
+
+    // the map as seen by an agent of the current size, used for line of sight checks
+    private final GridMap agentMap = new GridMap() {
+        @Override
+        public int getColumns() {
+            return columns;
+        }
+
+        @Override
+        public int getRows() {
+            return rows;
+        }
+
+        @Override
+        public boolean isBlocked(int x, int y) {
+            return !(searchClearance != null ? searchClearance : clearanceMap).fits(x, y, agentSize);
+        }
+    };
+
     @Override
     public void start(Stage stage) throws Exception{
 
         // initialize necessary fields
         unsettledNodes = new HashSet<>();
         settledNodes = new HashSet<>();
-        blockedNodes = new HashSet<>();
+        blockedMap = new VersionedMap(columns, rows);
+        components = new ComponentIndex(columns, rows);
+        clearanceMap = new ClearanceMap(columns, rows, MAX_AGENT_SIZE);
 
         // set up the animation loop
         timer = new AnimationTimer() {
@@ -124,6 +166,10 @@ public class Pathfinder extends Application {
     }
 
     private void tick() {
+        if (replay != null) {
+            replayTick();
+            return;
+        }
         // paint the current state of the map
         visualize();
         // refresh the screen
@@ -143,21 +189,14 @@ public class Pathfinder extends Application {
 
     // finds the next node to move to
     public Node findNext(Node previous) {
-        for (int dX = -1; dX <= 1; dX++) {
-            for (int dY = -1; dY <= 1; dY++) {
-                if (dX == 0 && dY == 0) { // this is the current node itself
-                    continue;
-                }
-                int nextX = previous.getX() + dX;
-                int nextY = previous.getY() + dY;
-
-//              calculates costs for the node at nextX, nextY and returns it
-                Node tempNode = processSuccessor(nextX, nextY, previous);
-//              if it's not null, add it to unsettled
-                if (tempNode != null) {
-                    unsettledNodes.add(tempNode);
-                    stepCount++; // opening a node counts as a step
-                }
+        Topology.Moves moves = topology.moves(previous.getY());
+        for (int i = 0; i < moves.count; i++) {
+//          calculates costs for the node reached by the i-th move and returns it
+            Node tempNode = processSuccessor(previous, moves, i);
+//          if it's not null, add it to unsettled
+            if (tempNode != null) {
+                unsettledNodes.add(tempNode);
+                stepCount++; // opening a node counts as a step
             }
         }
         // set the current node to the lowest cost unsettled node
@@ -171,32 +210,25 @@ public class Pathfinder extends Application {
 //      Improves path quality but adds a lot of additional steps.
         if(algorithm == Algorithm.Astar && next != null) {
             if (pathCorrection) {
-                for (int dx = -1; dx <= 1; dx++) {
-                    for (int dy = -1; dy <= 1; dy++) {
-                        if (dx == 0 && dy == 0) {
-                            continue;
-                        }
-                        if (!allowDiagonals && dx != 0 && dy != 0) {
+                Topology.Moves nextMoves = topology.moves(next.getY());
+                for (int i = 0; i < nextMoves.count; i++) {
+                    stepCount++;
+                    int nextX = next.getX() + nextMoves.dx[i];
+                    int nextY = next.getY() + nextMoves.dy[i];
+                    // don't cut corners and jump through diagonal fences
+                    if (nextMoves.diagonal[i]) {
+                        if (!searchClearance.fits(nextX, next.getY(), agentSize)
+                                || !searchClearance.fits(next.getX(), nextY, agentSize)) {
                             continue;
                         }
-                        stepCount++;
-                        int nextX = next.getX() + dx;
-                        int nextY = next.getY() + dy;
-                        // don't cut corners and jump through diagonal fences
-                        if((dx != 0) && (dy != 0)) {
-                            if (blockedNodes.contains(new Node(nextX,next.getY()))
-                                    || blockedNodes.contains(new Node(next.getX(),nextY))) {
-                                continue;
-                            }
-                        }
-                        if (unsettledNodes.contains(new Node(nextX, nextY))) {
-                            double nextG = next.getGCost() + Math.sqrt(square(dx) + square(dy));
-                            Node unsettledNode = getUnsettledNode(new Node(nextX, nextY));
-                            if (nextG < unsettledNode.getGCost()) {
-                                unsettledNode.setPredecessor(next);
-                                unsettledNode.setGCost(nextG);
-                                unsettledNode.setFCost(nextG + unsettledNode.getHCost());
-                            }
+                    }
+                    if (unsettledNodes.contains(new Node(nextX, nextY))) {
+                        double nextG = next.getGCost() + nextMoves.cost[i];
+                        Node unsettledNode = getUnsettledNode(new Node(nextX, nextY));
+                        if (nextG < unsettledNode.getGCost()) {
+                            unsettledNode.setPredecessor(next);
+                            unsettledNode.setGCost(nextG);
+                            unsettledNode.setFCost(nextG + unsettledNode.getHCost());
                         }
                     }
                 }
@@ -230,62 +262,48 @@ public class Pathfinder extends Application {
         return next;
     }
 
-//    calculate costs for node at x,y and return the node
-    private Node processSuccessor(int x, int y, Node currentNode) {
+//    calculate costs for the node reached from currentNode by the i-th of its moves and return the node
+    private Node processSuccessor(Node currentNode, Topology.Moves moves, int i) {
+        int x = currentNode.getX() + moves.dx[i];
+        int y = currentNode.getY() + moves.dy[i];
         // check if x,y are outside of map boundaries
         if (x < 0 || y < 0 || x >= columns || y >= rows) {
             return null;
         }
 //      prevent the algorithm from jumping across diagonal borders,
 //      this also disables cutting corners
-        if((x - currentNode.getX() != 0) && (y - currentNode.getY() != 0)) {
-            if (blockedNodes.contains(new Node(x,currentNode.getY()))
-                    || blockedNodes.contains(new Node(currentNode.getX(),y))) {
-                return null;
-            }
-        }
-
-//      if diagonal movements are not allowed,
-//      reject nodes where both x and y is different from the currentNode
-        if(!allowDiagonals) {
-            if((x - currentNode.getX() != 0) && (y - currentNode.getY() != 0)) {
+        if (moves.diagonal[i]) {
+            if (!searchClearance.fits(x, currentNode.getY(), agentSize)
+                    || !searchClearance.fits(currentNode.getX(), y, agentSize)) {
                 return null;
             }
         }
 
         Node node = new Node(x, y);
 
-        // if the node has been processed already or is in the list of blocked nodes, return null
-        if (settledNodes.contains(node) || blockedNodes.contains(node) || unsettledNodes.contains(node)) {
+        // if the node has been processed already or the agent doesn't fit there, return null
+        if (!searchClearance.fits(x, y, agentSize) || settledNodes.contains(node) || unsettledNodes.contains(node)) {
             return null;
         }
-        node.setPredecessor(currentNode);
-        // calculate G cost
-        int dX = Math.abs(x - currentNode.getX());
-        int dY = Math.abs(y - currentNode.getY());
-        double gCost = currentNode.getGCost() + Math.sqrt(square(dX) + square(dY));
+        Node parent = currentNode;
+        double gCost = currentNode.getGCost() + moves.cost[i];
+        // Theta*: if the predecessor of the current node can see this node directly,
+        // skip the current node and go straight from there
+        if (algorithm == Algorithm.ThetaStar && currentNode.getPredecessor() != null) {
+            Node grandparent = currentNode.getPredecessor();
+            if (LineOfSight.clear(agentMap, grandparent.getX(), grandparent.getY(), x, y)) {
+                parent = grandparent;
+                gCost = parent.getGCost() + parent.distanceTo(node);
+            }
+        }
+        node.setPredecessor(parent);
         node.setGCost(gCost);
 
         if (algorithm == Algorithm.Dijkstra) { // Dijkstra doesn't include the heuristic element
             // F cost = G cost
             node.setFCost(gCost);
         } else { // calculate H cost
-            int distanceToDestX = Math.abs(x - destination.getX());
-            int distanceToDestY = Math.abs(y - destination.getY());
-            double hCost = 0;
-            switch(heuristic) {
-                case Manhattan:
-                    hCost = distanceToDestX + distanceToDestY;
-                    break;
-                case Euclidean:
-                    hCost = Math.sqrt(square(distanceToDestX) + square(distanceToDestY));
-                    break;
-                case Quadratic:
-                    hCost = square(distanceToDestX) + square(distanceToDestY);
-                    break;
-                case Diagonal:
-                    hCost = Math.max(distanceToDestX, distanceToDestY);
-            }
+            double hCost = topology.estimate(heuristic, x, y, destination.getX(), destination.getY());
             node.setHCost(hWeight * hCost);
             // F cost = G cost + H cost
             node.setFCost(gCost + hCost);
@@ -325,7 +343,7 @@ public class Pathfinder extends Application {
     private void setOrigin(Node n) {
         if (n != null) { // origin can't be null or equal to destination
             if(!n.equals(destination)) {
-                blockedNodes.remove(n); // remove n from the list of blocked nodes
+                setUnblocked(n); // remove n from the list of blocked nodes
                 origin = n;
                 originLabel.setText("Origin: [" + n.getX() + "," + n.getY() + "]");
             }
@@ -335,7 +353,7 @@ public class Pathfinder extends Application {
     private void setDestination(Node n) {
         if (n != null) { // destination can't be null or equal to origin
             if(!n.equals(origin)) {
-                blockedNodes.remove(n); // remove n from the list of blocked nodes
+                setUnblocked(n); // remove n from the list of blocked nodes
                 destination = n;
                 destinationLabel.setText("Destination: [" + n.getX() + "," + n.getY() + "]");
             }
@@ -345,12 +363,20 @@ public class Pathfinder extends Application {
     private void setBlocked(Node n) {
         if(n != null) {
             // origin and destination can't be added to blocked
-            if (!n.equals(origin) && !n.equals(destination)) {
-                blockedNodes.add(n);
+            if (!n.equals(origin) && !n.equals(destination) && blockedMap.setBlocked(n.getX(), n.getY(), true)) {
+                components.block(n.getX(), n.getY());
+                clearanceMap.block(n.getX(), n.getY());
             }
         }
     }
 
+    private void setUnblocked(Node n) {
+        if (n != null && blockedMap.setBlocked(n.getX(), n.getY(), false)) {
+            components.unblock(n.getX(), n.getY());
+            clearanceMap.unblock(n.getX(), n.getY());
+        }
+    }
+
     private void odSwitch() {
         if(origin != null && destination != null) {
             Node tempOrigin = new Node(destination.getX(), destination.getY());
@@ -371,7 +397,7 @@ public class Pathfinder extends Application {
             int column = board.xToColumn(e.getX());
             Node node = new Node(column, row);
             if (e.getButton() == MouseButton.SECONDARY) {
-                blockedNodes.remove(node);
+                setUnblocked(node);
             } else if (e.getButton() == MouseButton.PRIMARY) {
                 if (e.isControlDown()) {
                     setOrigin(node);
@@ -393,7 +419,7 @@ public class Pathfinder extends Application {
         if(e.getButton() == MouseButton.PRIMARY) { // LMB + drag
             setBlocked(node);
         } else if(e.getButton() == MouseButton.SECONDARY) { // RMB + drag
-            blockedNodes.remove(node);
+            setUnblocked(node);
         }
         visualize();
         board.redraw();
@@ -401,6 +427,21 @@ public class Pathfinder extends Application {
 
     private void doStart() {
         if(origin != null && destination != null) {
+            // origin and destination are in different regions of the map or the agent
+            // doesn't fit into one of them, there's no need to search for a path that can't exist
+            if (!components.connected(origin.getX(), origin.getY(), destination.getX(), destination.getY())
+                    || !clearanceMap.fits(origin.getX(), origin.getY(), agentSize)
+                    || !clearanceMap.fits(destination.getX(), destination.getY(), agentSize)) {
+                pathLabel.setText("No path found!");
+                runningProperty.set(true);
+                resetButton.setDisable(false);
+                return;
+            }
+            searchClearance = new ClearanceMap(blockedMap.current(), MAX_AGENT_SIZE);
+            if (recordMode) {
+                record();
+                return;
+            }
             origin.setGCost(0);
             current = origin;
             isRunning = true;
@@ -409,12 +450,112 @@ public class Pathfinder extends Application {
         }
     }
 
+    // runs the whole search at once, writing its events into traceLog, and starts replaying it
+    private void record() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TraceRecorder recorder = new TraceRecorder(bytes, columns, rows, origin, destination,
+                algorithm, heuristic, topology)) {
+            GridSearch search = new GridSearch(agentMap, algorithm, heuristic, topology);
+            search.setListener(recorder);
+            search.find(origin, destination);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        traceLog = bytes.toByteArray();
+        try {
+            startReplay(SearchTrace.read(new ByteArrayInputStream(traceLog)));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void startReplay(SearchTrace trace) {
+        replay = new TraceReplay(trace);
+        movingSlider = true;
+        replaySlider.setMax(trace.size());
+        replaySlider.setValue(0);
+        movingSlider = false;
+        replaySlider.setDisable(false);
+        current = null;
+        isRunning = true;
+        runningProperty.set(true);
+        timer.start();
+    }
+
+    private void replayTick() {
+        // the user is dragging the slider, let them
+        if (replaySlider.isValueChanging()) {
+            return;
+        }
+        // the faster setting replays many events per frame
+        int events = speedFaster.isSelected() ? 50 : 1;
+        showReplay(replay.getPosition() + events);
+        if (replay.isFinished()) {
+            isRunning = false;
+            doStop();
+        }
+    }
+
+    // moves the replay to the given event and paints the state of the search at that point
+    private void showReplay(int event) {
+        replay.seek(event);
+        Node target = replay.getTrace().getDestination();
+        Heuristic traceHeuristic = replay.getTrace().getHeuristic();
+        Topology traceTopology = replay.getTrace().getTopology();
+        settledNodes.clear();
+        unsettledNodes.clear();
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+                byte status = replay.getStatus(x, y);
+                if (status != TraceReplay.NONE) {
+                    Node n = new Node(x, y);
+                    n.setGCost(replay.getGCost(x, y));
+                    n.setHCost(traceTopology.estimate(traceHeuristic, x, y, target.getX(), target.getY()));
+                    if (status == TraceReplay.SETTLED) {
+                        settledNodes.add(n);
+                    } else {
+                        unsettledNodes.add(n);
+                    }
+                }
+            }
+        }
+        current = replay.isFinished() ? null : replay.getCurrent();
+        stepCount = replay.getPosition();
+        statLabel.setText("Settled nodes: " + settledNodes.size() +
+                ", unsettled nodes: " + unsettledNodes.size() +
+                ", total steps: " + stepCount);
+        movingSlider = true;
+        replaySlider.setValue(replay.getPosition());
+        movingSlider = false;
+
+        List<Node> path = replay.getPath();
+        if (!path.isEmpty()) {
+            // link the path nodes together so that drawPath() can follow them back to the origin
+            for (int i = 1; i < path.size(); i++) {
+                path.get(i).setPredecessor(path.get(i - 1));
+            }
+            destination.setPredecessor(path.get(path.size() - 2));
+            drawPath();
+        } else {
+            visualize();
+            pathLabel.setText(replay.isFinished() ? "No path found!" : "");
+        }
+        board.redraw();
+    }
+
     private void doStop() {
         timer.stop();
         resetButton.setDisable(false);
     }
 
     private void doReset() {
+        replay = null;
+        searchClearance = null;
+        movingSlider = true;
+        replaySlider.setValue(0);
+        movingSlider = false;
+        replaySlider.setDisable(true);
         unsettledNodes.clear();
         settledNodes.clear();
         current = null;
@@ -432,6 +573,8 @@ public class Pathfinder extends Application {
             algorithm = Algorithm.Dijkstra;
         } else if (algoAstar.isSelected()) {
             algorithm = Algorithm.Astar;
+        } else if (algoThetaStar.isSelected()) {
+            algorithm = Algorithm.ThetaStar;
         }
     }
 
@@ -444,7 +587,7 @@ public class Pathfinder extends Application {
     }
 
     private void setAllowDiagonals() {
-        allowDiagonals = diagonalsCheckBox.isSelected();
+        topology = Topology.of(diagonalsCheckBox.isSelected());
     }
 
     private void setHeuristic() {
@@ -463,6 +606,24 @@ public class Pathfinder extends Application {
         pathCorrection = pathCorrectionCheckBox.isSelected();
     }
 
+    private void setSmoothPath() {
+        smoothPath = smoothPathCheckBox.isSelected();
+    }
+
+    private void setRecordMode() {
+        recordMode = recordCheckBox.isSelected();
+    }
+
+    private void setAgentSize() {
+        if(size3RButton.isSelected()) {
+            agentSize = 3;
+        } else if (size2RButton.isSelected()) {
+            agentSize = 2;
+        } else {
+            agentSize = 1;
+        }
+    }
+
     private void visualize() {
         board.clearGrid();
         // draw settled nodes
@@ -481,9 +642,7 @@ public class Pathfinder extends Application {
             board.setCellColor(n.getY(), n.getX(), Color.LIGHTSTEELBLUE);
         }
         //draw blocked nodes
-        for (Node n: blockedNodes) {
-            board.setCellColor(n.getY(), n.getX(), Color.BLACK);
-        }
+        blockedMap.current().forEachBlocked((x, y) -> board.setCellColor(y, x, Color.BLACK));
         if (current != null) {
             board.setCellColor(current.getY(), current.getX(), Color.FUCHSIA);
         }
@@ -498,24 +657,30 @@ public class Pathfinder extends Application {
 
     private void drawPath() {
         visualize();
-        ArrayList<Node> pathList = fullPath();
-        // The path is actually missing the last step.
-        // Here I'm estimating the cost of this step as 1 if diagonal moves are not allowed,
-        // and as 1.2 if diagonal moves are allowed (the actual cost of one step
-        // in this case could be either 1 or sqrt(2))
-        double pathCost = 1;
-        if (allowDiagonals) {
-            pathCost = 1.2;
-        }
-        for (int i = 0; i < pathList.size(); i++) {
-            int x = pathList.get(i).getX();
-            int y = pathList.get(i).getY();
-            board.setCellColor(y, x, Color.DARKRED);
-            if (i < pathList.size() - 1) {
-                pathCost += Math.abs(pathList.get(i).getGCost() - pathList.get(i+1).getGCost());
-            }
-        }
-        pathLabel.setText("Path length: " + pathList.size() + ", cost: " + String.format("%.2f", pathCost));
+        // the full list of waypoints, from origin to destination
+        List<Node> waypoints = new ArrayList<>();
+        waypoints.add(origin);
+        waypoints.addAll(fullPath());
+        waypoints.add(destination);
+        if (smoothPath) {
+            waypoints = LineOfSight.smooth(agentMap, waypoints);
+        }
+        // the cost is the exact length of the straight segments between the waypoints
+        double pathCost = LineOfSight.pathCost(waypoints);
+        // Theta* and smoothing leave gaps between the waypoints, so draw the lines between them
+        Set<Node> pathCells = new LinkedHashSet<>();
+        for (int i = 1; i < waypoints.size(); i++) {
+            Node from = waypoints.get(i - 1);
+            Node to = waypoints.get(i);
+            pathCells.addAll(LineOfSight.cells(from.getX(), from.getY(), to.getX(), to.getY()));
+        }
+        pathCells.remove(origin);
+        pathCells.remove(destination);
+        for (Node n : pathCells) {
+            board.setCellColor(n.getY(), n.getX(), Color.DARKRED);
+        }
+        pathLabel.setText("Path length: " + pathCells.size() + ", waypoints: " + waypoints.size()
+                + ", cost: " + String.format("%.2f", pathCost));
     }
 
     // set up the UI and return the root
@@ -567,6 +732,26 @@ public class Pathfinder extends Application {
 
         saveButton.setOnMouseClicked(e -> saveMap());
         loadButton.setOnMouseClicked(e -> loadMap());
+
+        saveTraceButton = new Button("Save trace");
+        loadTraceButton = new Button("Load trace");
+        saveTraceButton.setFont(font);
+        loadTraceButton.setFont(font);
+        saveTraceButton.setMaxWidth(Double.MAX_VALUE);
+        loadTraceButton.setMaxWidth(Double.MAX_VALUE);
+        loadTraceButton.disableProperty().bind(runningProperty);
+        saveTraceButton.setOnMouseClicked(e -> saveTrace());
+        loadTraceButton.setOnMouseClicked(e -> loadTrace());
+
+        // scrubbing through a recorded search
+        replaySlider = new Slider(0, 1, 0);
+        replaySlider.setPrefWidth(200);
+        replaySlider.setDisable(true);
+        replaySlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (!movingSlider && replay != null) {
+                showReplay(newValue.intValue());
+            }
+        });
         startButton.setOnMouseClicked(e -> doStart());
         resetButton.setOnMouseClicked(e -> doReset());
 
@@ -587,6 +772,12 @@ public class Pathfinder extends Application {
         algoDijkstra.setOnAction(e -> setAlgorithm());
         algoAstar.setOnAction(e -> setAlgorithm());
         algoAstar.disableProperty().bind(runningProperty);
+        algoThetaStar = new RadioButton("Theta*");
+        algoThetaStar.setToggleGroup(algoGroup);
+        algoThetaStar.setMaxWidth(Double.MAX_VALUE);
+        algoThetaStar.setFont(font);
+        algoThetaStar.setOnAction(e -> setAlgorithm());
+        algoThetaStar.disableProperty().bind(runningProperty);
 
         Label speedLabel = new Label("Speed:");
         speedLabel.setFont(fontBold);
@@ -634,6 +825,30 @@ public class Pathfinder extends Application {
         euclideanRButton.setOnAction(e -> setHeuristic());
         diagonalRButton.setOnAction(e -> setHeuristic());
 
+        Label sizeLabel = new Label("Agent size:");
+        sizeLabel.setFont(fontBold);
+        sizeLabel.setStyle("-fx-padding: 20px 0 0 0;");
+        ToggleGroup sizeGroup = new ToggleGroup();
+        size1RButton = new RadioButton("1×1");
+        size1RButton.setToggleGroup(sizeGroup);
+        size1RButton.setFont(font);
+        size1RButton.setMaxWidth(Double.MAX_VALUE);
+        size1RButton.disableProperty().bind(runningProperty);
+        size2RButton = new RadioButton("2×2");
+        size2RButton.setToggleGroup(sizeGroup);
+        size2RButton.setFont(font);
+        size2RButton.setMaxWidth(Double.MAX_VALUE);
+        size2RButton.disableProperty().bind(runningProperty);
+        size3RButton = new RadioButton("3×3");
+        size3RButton.setToggleGroup(sizeGroup);
+        size3RButton.setFont(font);
+        size3RButton.setMaxWidth(Double.MAX_VALUE);
+        size3RButton.disableProperty().bind(runningProperty);
+        size1RButton.setSelected(true);
+        size1RButton.setOnAction(e -> setAgentSize());
+        size2RButton.setOnAction(e -> setAgentSize());
+        size3RButton.setOnAction(e -> setAgentSize());
+
         diagonalsCheckBox = new CheckBox("Allow\ndiagonal\nmovement");
         diagonalsCheckBox.setStyle("-fx-padding: 20px 0 0 0;");
         diagonalsCheckBox.setSelected(true);
@@ -648,17 +863,34 @@ public class Pathfinder extends Application {
         pathCorrectionCheckBox.setOnAction(e -> setPathCorrection());
         pathCorrectionCheckBox.disableProperty().bind(runningProperty);
 
+        smoothPathCheckBox = new CheckBox("Smooth\npath");
+        smoothPathCheckBox.setSelected(false);
+        smoothPathCheckBox.setFont(font);
+        smoothPathCheckBox.setOnAction(e -> setSmoothPath());
+        smoothPathCheckBox.disableProperty().bind(runningProperty);
+
+        recordCheckBox = new CheckBox("Record &\nreplay");
+        recordCheckBox.setSelected(false);
+        recordCheckBox.setFont(font);
+        recordCheckBox.setOnAction(e -> setRecordMode());
+        recordCheckBox.disableProperty().bind(runningProperty);
+
         VBox rightPane = new VBox(10, startButton, resetButton, saveButton, loadButton,
-                algoLabel, algoAstar, algoDijkstra,
+                saveTraceButton, loadTraceButton,
+                algoLabel, algoAstar, algoDijkstra, algoThetaStar,
                 diagonalsCheckBox,
+                smoothPathCheckBox,
                 pathCorrectionCheckBox,
+                recordCheckBox,
                 odSwitchButton,
                 heuristicLabel, quadraticRButton, manhattanRButton, euclideanRButton, diagonalRButton,
+                sizeLabel, size1RButton, size2RButton, size3RButton,
                 speedLabel, speedFaster, speedSlower);
         rightPane.setStyle("-fx-padding: 8px;");
         rightPane.setAlignment(Pos.TOP_LEFT);
 
-        HBox bottomPane = new HBox(30, originLabel,
+        HBox bottomPane = new HBox(30, replaySlider,
+                originLabel,
                 destinationLabel,
                 statLabel,
                 pathLabel);
@@ -681,31 +913,12 @@ public class Pathfinder extends Application {
 
         FileChooser fileChooser = new FileChooser();
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Path map", "*.pathmap"));
-        FileWriter fw = null;
-        BufferedWriter bw = null;
         File saveFile = fileChooser.showSaveDialog(root.getScene().getWindow());
         if (saveFile != null) {
             try {
-                fw = new FileWriter(saveFile);
-                bw = new BufferedWriter(fw);
-                bw.write("O," + origin.getX() +"," + origin.getY() + "\n");
-                bw.write("D," + destination.getX() + "," + destination.getY() + "\n");
-                if(!blockedNodes.isEmpty()) {
-                    for (Node n : blockedNodes) {
-                        bw.write("B," + n.getX() + "," + n.getY() + "\n");
-                    }
-                }
+                MapFile.save(saveFile, origin, destination, blockedMap.current());
             } catch (IOException e) {
                 e.printStackTrace();
-            } finally {
-                try {
-                    if (bw != null) {
-                        bw.close();
-                        fw.close();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
             }
         }
     }
@@ -714,69 +927,70 @@ public class Pathfinder extends Application {
         FileChooser fileChooser = new FileChooser();
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Path map", "*.pathmap"));
         File loadFile = fileChooser.showOpenDialog(root.getScene().getWindow());
-        FileReader fr = null;
-        BufferedReader br = null;
         if (loadFile != null) {
             settledNodes.clear();
             unsettledNodes.clear();
-            blockedNodes.clear();
+            blockedMap.update(TiledMap::clear);
+            components.clear();
+            clearanceMap.clear();
             origin = null;
             destination = null;
             try {
-                fr = new FileReader(loadFile);
-                br = new BufferedReader(fr);
-                String input;
-                // reading the file line by line
-                while((input = br.readLine()) != null) {
-                    // split the line using comma as a separator
-                    String[] splitLine = input.split(",");
-                    // if there are three parts, proceed with parsing
-                    if(splitLine.length == 3) {
-                        int x = -1;
-                        int y = -1;
-                        try {
-                            x = Integer.parseInt(splitLine[1]); // try to parse x
-                            y = Integer.parseInt(splitLine[2]); // try to parse y
-                        } catch (NumberFormatException e) {
-                            e.printStackTrace();
-                        }
-                        if(x != -1 && y != -1) { // if parsing successful, look at the type of the node
-                            switch (splitLine[0]) {
-                                case "O": // origin
-                                    setOrigin(new Node(x, y));
-                                    break;
-                                case "D": // destination
-                                    setDestination(new Node(x, y));
-                                    break;
-                                case "B": // blocked
-                                    setBlocked(new Node(x, y));
-                                    break;
-                            }
-                        }
-                    }
-                }
+                MapFile map = MapFile.load(loadFile, columns, rows);
+                setOrigin(map.getOrigin());
+                setDestination(map.getDestination());
+                map.getBlockedMap().forEachBlocked((x, y) -> setBlocked(new Node(x, y)));
             } catch (IOException e) {
                 e.printStackTrace();
-            } finally {
-                try {
-                    if (br != null) {
-                        br.close();
-                        fr.close();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
             }
             visualize();
             board.redraw();
         }
     }
 
-    public static void main(String[] args) {
-        launch(args);
+    private void saveTrace() {
+        // nothing has been recorded yet
+        if (traceLog == null) {
+            return;
+        }
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Search trace", "*.jptrace"));
+        File saveFile = fileChooser.showSaveDialog(root.getScene().getWindow());
+        if (saveFile != null) {
+            try (OutputStream out = new FileOutputStream(saveFile)) {
+                out.write(traceLog);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // the trace doesn't include the map, so the matching map should be loaded first
+    private void loadTrace() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Search trace", "*.jptrace"));
+        File loadFile = fileChooser.showOpenDialog(root.getScene().getWindow());
+        if (loadFile != null) {
+            try (InputStream in = new FileInputStream(loadFile)) {
+                byte[] log = in.readAllBytes();
+                SearchTrace trace = SearchTrace.read(new ByteArrayInputStream(log));
+                if (trace.getColumns() != columns || trace.getRows() != rows) {
+                    pathLabel.setText("The trace is for a " + trace.getColumns() + "x" + trace.getRows() + " map");
+                    return;
+                }
+                traceLog = log;
+                doReset();
+                destination = null;
+                setOrigin(trace.getOrigin());
+                setDestination(trace.getDestination());
+                startReplay(trace);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
-    public static int square(int n) {
-        return n*n;
+    public static void main(String[] args) {
+        launch(args);
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.pavelurusov.pathfinder;
+
+/**
+ * Space-time reservation table for cooperative pathfinding: records which agent occupies
+ * which cell at which time step. Every (cell, time) pair is packed into a single long key
+ * of a LongIntTable, so there are no objects per entry.
+ */
+
+public class ReservationTable {
+    private final LongIntTable agents = new LongIntTable(64);
+
+    // marks the cell as occupied by the agent at the given time,
+    // returns false (and changes nothing) if another agent has already reserved it;
+    // agents are numbered from 0
+    public boolean reserve(int cell, int time, int agent) {
+        int owner = agents.putIfAbsent(key(cell, time), agent);
+        return owner == -1 || owner == agent;
+    }
+
+    // frees the cell at the given time if the agent has reserved it
+    public void release(int cell, int time, int agent) {
+        long key = key(cell, time);
+        if (agents.get(key) == agent) {
+            agents.remove(key);
+        }
+    }
+
+    // returns the agent that occupies the cell at the given time, or -1 if it's free
+    public int owner(int cell, int time) {
+        return agents.get(key(cell, time));
+    }
+
+    public boolean isReserved(int cell, int time) {
+        return owner(cell, time) != -1;
+    }
+
+    private static long key(int cell, int time) {
+        return ((long) time << 32) | (cell & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,108 @@
+package com.pavelurusov.pathfinder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A list of queries to run, read from a scenario file in the style of the Moving AI
+ * benchmark .scen files. After an optional "version" line, every line has nine
+ * tab or space separated fields:
+ * bucket, map, map width, map height, origin x, origin y, destination x, destination y, optimal cost.
+ * The map is a .pathmap, .map (Moving AI octile) or .tiles file, relative to the scenario file. The optimal cost can be 0 if it isn't known.
+ */
+
+public class Scenario {
+
+    public static class Query {
+        private final int bucket;
+        private final File mapFile;
+        private final int columns, rows;
+        private final Node origin, destination;
+        private final double optimalCost;
+
+        public Query(int bucket, File mapFile, int columns, int rows, Node origin, Node destination, double optimalCost) {
+            this.bucket = bucket;
+            this.mapFile = mapFile;
+            this.columns = columns;
+            this.rows = rows;
+            this.origin = origin;
+            this.destination = destination;
+            this.optimalCost = optimalCost;
+        }
+
+        public int getBucket() {
+            return bucket;
+        }
+
+        public File getMapFile() {
+            return mapFile;
+        }
+
+        public int getColumns() {
+            return columns;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public Node getOrigin() {
+            return origin;
+        }
+
+        public Node getDestination() {
+            return destination;
+        }
+
+        public double getOptimalCost() {
+            return optimalCost;
+        }
+    }
+
+    private final List<Query> queries = new ArrayList<>();
+
+    public List<Query> getQueries() {
+        return Collections.unmodifiableList(queries);
+    }
+
+    public void add(Query query) {
+        queries.add(query);
+    }
+
+    public static Scenario load(File file) throws IOException {
+        Scenario scenario = new Scenario();
+        File directory = file.getAbsoluteFile().getParentFile();
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String input;
+            int lineNumber = 0;
+            while ((input = br.readLine()) != null) {
+                lineNumber++;
+                input = input.trim();
+                if (input.isEmpty() || input.startsWith("version")) {
+                    continue;
+                }
+                String[] fields = input.split("\\s+");
+                if (fields.length != 9) {
+                    throw new IOException(file + ", line " + lineNumber + ": expected 9 fields, found " + fields.length);
+                }
+                try {
+                    scenario.add(new Query(Integer.parseInt(fields[0]),
+                            new File(directory, fields[1]),
+                            Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3]),
+                            new Node(Integer.parseInt(fields[4]), Integer.parseInt(fields[5])),
+                            new Node(Integer.parseInt(fields[6]), Integer.parseInt(fields[7])),
+                            Double.parseDouble(fields[8])));
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ", line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        return scenario;
+    }
+}
@@ -0,0 +1,18 @@
+package com.pavelurusov.pathfinder;
+
+/**
+ * Receives the events of a running search. Cells are numbered row by row (cell = y * columns + x),
+ * as longs because huge maps can have more cells than an int can count.
+ */
+
+public interface SearchListener {
+
+    // the cell was added to the collection of unsettled nodes
+    void opened(long cell, long predecessor);
+
+    // the cell was settled
+    void settled(long cell);
+
+    // a cheaper way to get to an unsettled (or, for Lazy Theta*, just settled) cell was found
+    void reparented(long cell, long predecessor);
+}
@@ -0,0 +1,48 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a single search: the path (as a list of waypoints from origin to destination,
+ * empty if there is no path), its exact cost and some statistics.
+ */
+
+public class SearchResult {
+    private final List<Node> path;
+    private final double cost;
+    private final int opened; // nodes added to the collection of unsettled nodes
+    private final int settled; // nodes expanded
+
+    public SearchResult(List<Node> path, int opened, int settled) {
+        this(path, path.isEmpty() ? Double.POSITIVE_INFINITY : LineOfSight.pathCost(path), opened, settled);
+    }
+
+    // for paths whose cost isn't the straight line distance between the waypoints (hex grids)
+    public SearchResult(List<Node> path, double cost, int opened, int settled) {
+        this.path = Collections.unmodifiableList(path);
+        this.cost = cost;
+        this.opened = opened;
+        this.settled = settled;
+    }
+
+    public boolean isFound() {
+        return !path.isEmpty();
+    }
+
+    public List<Node> getPath() {
+        return path;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    public int getOpened() {
+        return opened;
+    }
+
+    public int getSettled() {
+        return settled;
+    }
+}
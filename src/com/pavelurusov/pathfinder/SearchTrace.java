@@ -0,0 +1,160 @@
+package com.pavelurusov.pathfinder;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * A search log written by TraceRecorder, decoded into arrays so that any event
+ * can be reached directly. Replaying needs a state for every cell of the map,
+ * so only maps with fewer than 2^31 cells can be replayed.
+ */
+
+public class SearchTrace {
+    private final int columns, rows;
+    private final Node origin, destination;
+    private final Algorithm algorithm;
+    private final Heuristic heuristic;
+    private final Topology topology;
+    private int size = 0;
+    private byte[] types = new byte[1024];
+    private int[] cells = new int[1024];
+    private int[] predecessors = new int[1024];
+
+    private SearchTrace(int columns, int rows, int origin, int destination,
+                        Algorithm algorithm, Heuristic heuristic, Topology topology) {
+        this.columns = columns;
+        this.rows = rows;
+        this.origin = new Node(origin % columns, origin / columns);
+        this.destination = new Node(destination % columns, destination / columns);
+        this.algorithm = algorithm;
+        this.heuristic = heuristic;
+        this.topology = topology;
+    }
+
+    public static SearchTrace read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != TraceRecorder.MAGIC) {
+            throw new IOException("Not a search trace");
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > TraceRecorder.VERSION) {
+            throw new IOException("Unsupported search trace version " + version);
+        }
+        long columns = readVarint(in);
+        long rows = readVarint(in);
+        long origin = readVarint(in);
+        long destination = readVarint(in);
+        long algorithm = readVarint(in);
+        long heuristic = readVarint(in);
+        // the costs on both square grids are the same, so a version 1 trace replays fine as 8-connected
+        long topology = version >= 2 ? readVarint(in) : Topology.EightConnected.ordinal();
+        long cells = columns * rows;
+        if (columns <= 0 || rows <= 0 || columns > Integer.MAX_VALUE || rows > Integer.MAX_VALUE
+                || origin >= cells || destination >= cells
+                || algorithm >= Algorithm.values().length || heuristic >= Heuristic.values().length
+                || topology >= Topology.values().length) {
+            throw new IOException("Corrupted search trace header");
+        }
+        if (cells > Integer.MAX_VALUE) {
+            throw new IOException("The map of this trace is too large to replay");
+        }
+        SearchTrace trace = new SearchTrace((int) columns, (int) rows, (int) origin, (int) destination,
+                Algorithm.values()[(int) algorithm], Heuristic.values()[(int) heuristic],
+                Topology.values()[(int) topology]);
+        long cell = 0;
+        int first;
+        // the log simply ends after the last event
+        while ((first = in.read()) != -1) {
+            long value = readVarint(in, first);
+            int type = (int) (value & 3);
+            cell += TraceRecorder.unzigzag(value >>> 2);
+            long predecessor = cell;
+            if (type != TraceRecorder.SETTLE) {
+                predecessor = cell + TraceRecorder.unzigzag(readVarint(in));
+            }
+            if (type > TraceRecorder.REPARENT || cell < 0 || cell >= cells
+                    || predecessor < 0 || predecessor >= cells) {
+                throw new IOException("Corrupted search trace at event " + trace.size);
+            }
+            trace.add(type, (int) cell, (int) predecessor);
+        }
+        return trace;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public Node getOrigin() {
+        return origin;
+    }
+
+    public Node getDestination() {
+        return destination;
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    // number of events
+    public int size() {
+        return size;
+    }
+
+    // one of TraceRecorder.OPEN, SETTLE or REPARENT
+    int getType(int event) {
+        return types[event];
+    }
+
+    int getCell(int event) {
+        return cells[event];
+    }
+
+    int getPredecessor(int event) {
+        return predecessors[event];
+    }
+
+    private void add(int type, int cell, int predecessor) {
+        if (size == cells.length) {
+            types = Arrays.copyOf(types, size * 2);
+            cells = Arrays.copyOf(cells, size * 2);
+            predecessors = Arrays.copyOf(predecessors, size * 2);
+        }
+        types[size] = (byte) type;
+        cells[size] = cell;
+        predecessors[size] = predecessor;
+        size++;
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        return readVarint(in, in.readUnsignedByte());
+    }
+
+    private static long readVarint(DataInputStream in, int first) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            if (shift > 63) {
+                throw new IOException("Corrupted search trace: varint is too long");
+            }
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
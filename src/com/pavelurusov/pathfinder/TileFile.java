@@ -0,0 +1,112 @@
+package com.pavelurusov.pathfinder;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores a TiledMap on disk so that it can be paged in lazily, one tile at a time.
+ * Only the tiles that contain walls are written. The file starts with the magic number "JPTL",
+ * a version byte, the size of the map and the number of tiles, followed by an index
+ * (the x and y of every tile) and then the tiles themselves, 64 longs each, in the order of the index.
+ */
+
+public class TileFile implements TileSource, Closeable {
+    private static final int MAGIC = 0x4A50544C; // "JPTL"
+    private static final int VERSION = 1;
+    private static final int TILE_BYTES = TiledMap.TILE_SIZE * Long.BYTES;
+
+    private final RandomAccessFile file;
+    private final Map<Long, Long> offsets = new HashMap<>(); // tile -> position of its data in the file
+    private final int columns, rows;
+
+    private TileFile(File path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        if (file.readInt() != MAGIC || file.readUnsignedByte() != VERSION) {
+            file.close();
+            throw new IOException(path + " is not a tile file, or has an unsupported version");
+        }
+        columns = file.readInt();
+        rows = file.readInt();
+        int count = file.readInt();
+        // read the whole index at once
+        byte[] index = new byte[count * 2 * Integer.BYTES];
+        file.readFully(index);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+        long data = file.getFilePointer();
+        for (int i = 0; i < count; i++) {
+            int tileX = in.readInt();
+            int tileY = in.readInt();
+            offsets.put(key(tileX, tileY), data + (long) i * TILE_BYTES);
+        }
+    }
+
+    // opens the file and returns a map that reads its tiles from it when they are needed
+    public static TiledMap open(File path) throws IOException {
+        TileFile tiles = new TileFile(path);
+        return new TiledMap(tiles.columns, tiles.rows, tiles);
+    }
+
+    // writes all the tiles that contain walls (reading them from the map's own source if necessary)
+    public static void write(File path, TiledMap map) throws IOException {
+        int count = 0;
+        for (int tileY = 0; tileY < map.getTileRows(); tileY++) {
+            for (int tileX = 0; tileX < map.getTileColumns(); tileX++) {
+                if (map.loadedTile(tileX, tileY) != TiledMap.EMPTY) {
+                    count++;
+                }
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(map.getColumns());
+            out.writeInt(map.getRows());
+            out.writeInt(count);
+            for (int pass = 0; pass < 2; pass++) { // the index first, then the data
+                for (int tileY = 0; tileY < map.getTileRows(); tileY++) {
+                    for (int tileX = 0; tileX < map.getTileColumns(); tileX++) {
+                        TiledMap.Tile tile = map.loadedTile(tileX, tileY);
+                        if (tile == TiledMap.EMPTY) {
+                            continue;
+                        }
+                        if (pass == 0) {
+                            out.writeInt(tileX);
+                            out.writeInt(tileY);
+                        } else {
+                            for (long row : tile.rows) {
+                                out.writeLong(row);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized long[] loadTile(int tileX, int tileY) throws IOException {
+        Long offset = offsets.get(key(tileX, tileY));
+        if (offset == null) {
+            return null;
+        }
+        byte[] data = new byte[TILE_BYTES];
+        file.seek(offset);
+        file.readFully(data);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        long[] tile = new long[TiledMap.TILE_SIZE];
+        for (int i = 0; i < tile.length; i++) {
+            tile[i] = in.readLong();
+        }
+        return tile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static long key(int tileX, int tileY) {
+        return ((long) tileY << 32) | (tileX & 0xFFFFFFFFL);
+    }
+}
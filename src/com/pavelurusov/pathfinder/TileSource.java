@@ -0,0 +1,14 @@
+package com.pavelurusov.pathfinder;
+
+import java.io.IOException;
+
+/**
+ * Somewhere TiledMap can read its tiles from when they are first needed.
+ */
+
+public interface TileSource {
+
+    // returns the 64 rows of the tile (bit x of row y is set if the cell is blocked),
+    // or null if the tile is empty
+    long[] loadTile(int tileX, int tileY) throws IOException;
+}
@@ -0,0 +1,281 @@
+package com.pavelurusov.pathfinder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Obstacle map for very large, mostly empty worlds.
+ * The map is cut into 64x64 tiles, and every tile stores its blocked cells as 64 longs (one bit per cell).
+ * All empty tiles share the same flyweight instance, and groups of 16x16 tiles that are completely empty
+ * aren't allocated at all, so the memory used grows with the number of obstacles, not with the area.
+ * A map can be backed by a TileSource (for example a TileFile), in which case tiles are read lazily,
+ * the first time they are needed.
+ *
+ * snapshot() returns an immutable copy of the map that shares all its tiles with it. Tiles and groups
+ * are copied on write: the first edit of a tile after a snapshot copies that tile (and its group's
+ * array of tiles) and leaves the snapshot's version alone. Every edit increases the version number
+ * of the map, and a snapshot keeps the version it was taken at.
+ */
+
+public class TiledMap implements GridMap {
+    static final int TILE_BITS = 6;
+    static final int TILE_SIZE = 1 << TILE_BITS; // 64 cells, the width of a long
+    private static final int GROUP_BITS = 4;
+    private static final int GROUP_SIZE = 1 << GROUP_BITS; // 16x16 tiles per group
+
+    // generation of the tiles that may be shared by several maps, and must be copied before they're edited
+    private static final int SHARED = -1;
+
+    // the shared instance for all the empty tiles, never modified
+    static final Tile EMPTY = new Tile(new long[TILE_SIZE], 0, SHARED);
+
+    // one tile; the final field makes tiles safe to publish to searches running on other threads
+    static final class Tile {
+        final long[] rows; // one long per row of the tile, bit x is set if the cell is blocked
+        final int generation; // the tile can only be edited in place by the map of the same generation
+        int blockedCount;
+
+        Tile(long[] rows, int blockedCount, int generation) {
+            this.rows = rows;
+            this.blockedCount = blockedCount;
+            this.generation = generation;
+        }
+    }
+
+    // called for every blocked cell
+    public interface CellVisitor {
+        void visit(int x, int y);
+    }
+
+    private final int columns, rows;
+    private final int tileColumns, tileRows;
+    private final int groupColumns;
+    // groups[g][t] is a tile, null if it hasn't been loaded from the source yet
+    // (or is empty, if there is no source)
+    private final Tile[][] groups;
+    private TileSource source;
+
+    // snapshots are read-only, and there is no copying on write for them
+    private final boolean readOnly;
+    // taking a snapshot starts a new generation: everything created before that is shared with it
+    private int generation = 0;
+    private final int[] groupGeneration;
+    private long version = 0;
+
+    public TiledMap(int columns, int rows) {
+        this(columns, rows, null);
+    }
+
+    public TiledMap(int columns, int rows, TileSource source) {
+        this.columns = columns;
+        this.rows = rows;
+        this.source = source;
+        tileColumns = (columns + TILE_SIZE - 1) >> TILE_BITS;
+        tileRows = (rows + TILE_SIZE - 1) >> TILE_BITS;
+        groupColumns = (tileColumns + GROUP_SIZE - 1) >> GROUP_BITS;
+        int groupRows = (tileRows + GROUP_SIZE - 1) >> GROUP_BITS;
+        groups = new Tile[groupColumns * groupRows][];
+        groupGeneration = new int[groups.length];
+        readOnly = false;
+    }
+
+    // a read-only snapshot of the map
+    private TiledMap(TiledMap map) {
+        columns = map.columns;
+        rows = map.rows;
+        tileColumns = map.tileColumns;
+        tileRows = map.tileRows;
+        groupColumns = map.groupColumns;
+        groups = map.groups.clone();
+        groupGeneration = null;
+        source = map.source;
+        version = map.version;
+        readOnly = true;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    // cells outside of the map count as blocked
+    @Override
+    public boolean isBlocked(int x, int y) {
+        if (x < 0 || y < 0 || x >= columns || y >= rows) {
+            return true;
+        }
+        Tile tile = tile(x >> TILE_BITS, y >> TILE_BITS);
+        return (tile.rows[y & (TILE_SIZE - 1)] & (1L << x)) != 0;
+    }
+
+    // blocks or unblocks a cell, returns true if anything changed
+    public boolean setBlocked(int x, int y, boolean blocked) {
+        checkWritable();
+        if (x < 0 || y < 0 || x >= columns || y >= rows || isBlocked(x, y) == blocked) {
+            return false;
+        }
+        int tileX = x >> TILE_BITS;
+        int tileY = y >> TILE_BITS;
+        Tile tile = tile(tileX, tileY);
+        if (tile == EMPTY) {
+            // the flyweight is shared, so the first wall in a tile needs a tile of its own
+            tile = new Tile(new long[TILE_SIZE], 0, generation);
+            put(tileX, tileY, tile);
+        } else if (tile.generation != generation) {
+            // the tile is part of a snapshot (or was loaded by one), edit a copy
+            long[] bits = tile.rows.clone();
+            tile = new Tile(bits, count(bits), generation);
+            put(tileX, tileY, tile);
+        }
+        tile.rows[y & (TILE_SIZE - 1)] ^= 1L << x;
+        tile.blockedCount += blocked ? 1 : -1;
+        if (tile.blockedCount == 0) {
+            put(tileX, tileY, EMPTY);
+        }
+        version++;
+        return true;
+    }
+
+    // removes all the walls (and forgets the source, if there was one)
+    public void clear() {
+        checkWritable();
+        source = null;
+        // the snapshots have copies of this array, so they keep their groups
+        Arrays.fill(groups, null);
+        version++;
+    }
+
+    // returns an immutable copy of the map in its current state; it costs one reference per 16x16 tiles,
+    // the tiles themselves are shared until they're edited
+    public synchronized TiledMap snapshot() {
+        if (readOnly) {
+            return this;
+        }
+        TiledMap snapshot = new TiledMap(this);
+        generation++;
+        return snapshot;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // increases with every edit
+    public long getVersion() {
+        return version;
+    }
+
+    // visits every blocked cell, row by row within each tile
+    public void forEachBlocked(CellVisitor visitor) {
+        for (int tileY = 0; tileY < tileRows; tileY++) {
+            for (int tileX = 0; tileX < tileColumns; tileX++) {
+                Tile tile = loadedTile(tileX, tileY);
+                if (tile == EMPTY) {
+                    continue;
+                }
+                for (int row = 0; row < TILE_SIZE; row++) {
+                    long bits = tile.rows[row];
+                    while (bits != 0) {
+                        int column = Long.numberOfTrailingZeros(bits);
+                        visitor.visit((tileX << TILE_BITS) + column, (tileY << TILE_BITS) + row);
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    int getTileColumns() {
+        return tileColumns;
+    }
+
+    int getTileRows() {
+        return tileRows;
+    }
+
+    // returns the tile, reading it from the source first if necessary
+    Tile loadedTile(int tileX, int tileY) {
+        // skip whole groups that were never touched if there is nothing to load them from
+        if (source == null && groups[group(tileX, tileY)] == null) {
+            return EMPTY;
+        }
+        return tile(tileX, tileY);
+    }
+
+    private Tile tile(int tileX, int tileY) {
+        Tile[] group = groups[group(tileX, tileY)];
+        Tile tile = group == null ? null : group[indexInGroup(tileX, tileY)];
+        if (tile == null) {
+            tile = source == null ? EMPTY : load(tileX, tileY);
+        }
+        return tile;
+    }
+
+    // several searches can ask for the same tile at the same time, only one of them reads it
+    private synchronized Tile load(int tileX, int tileY) {
+        Tile[] group = groups[group(tileX, tileY)];
+        if (group != null && group[indexInGroup(tileX, tileY)] != null) {
+            return group[indexInGroup(tileX, tileY)];
+        }
+        Tile tile = EMPTY;
+        try {
+            long[] bits = source.loadTile(tileX, tileY);
+            if (bits != null) {
+                int count = count(bits);
+                if (count > 0) {
+                    // a snapshot may be putting the tile into a group it shares with other maps
+                    tile = new Tile(bits, count, readOnly ? SHARED : generation);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        put(tileX, tileY, tile);
+        return tile;
+    }
+
+    // Snapshots only ever put tiles that they load from the source into empty places,
+    // and every map that shares the group would load the same tile into that place.
+    private synchronized void put(int tileX, int tileY, Tile tile) {
+        int g = group(tileX, tileY);
+        if (groups[g] == null) {
+            groups[g] = new Tile[GROUP_SIZE * GROUP_SIZE];
+            if (!readOnly) {
+                groupGeneration[g] = generation;
+            }
+        } else if (!readOnly && groupGeneration[g] != generation) {
+            // the group is shared with a snapshot
+            groups[g] = groups[g].clone();
+            groupGeneration[g] = generation;
+        }
+        groups[g][indexInGroup(tileX, tileY)] = tile;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Map snapshots are read-only");
+        }
+    }
+
+    private static int count(long[] bits) {
+        int count = 0;
+        for (long row : bits) {
+            count += Long.bitCount(row);
+        }
+        return count;
+    }
+
+    private int group(int tileX, int tileY) {
+        return (tileY >> GROUP_BITS) * groupColumns + (tileX >> GROUP_BITS);
+    }
+
+    private static int indexInGroup(int tileX, int tileY) {
+        return ((tileY & (GROUP_SIZE - 1)) << GROUP_BITS) | (tileX & (GROUP_SIZE - 1));
+    }
+}
@@ -0,0 +1,111 @@
+package com.pavelurusov.pathfinder;
+
+/**
+ * Which cells are neighbours and how much it costs to move between them.
+ * Every topology precomputes its moves (offsets and step costs) once, so the search loops
+ * just walk a table instead of looping over dx and dy and checking what is allowed.
+ *
+ * FourConnected and EightConnected are the usual square grids; diagonal moves cost sqrt(2)
+ * and can't cut corners. Hex treats the map as a grid of pointy-topped hexagons in the
+ * "odd-r" layout, where every odd row is shifted half a cell to the right. Every cell has six
+ * neighbours, which ones depends on whether the row is even or odd, and every move costs 1.
+ */
+
+public enum Topology {
+    FourConnected(false,
+            new int[][] {{1, 0}, {-1, 0}, {0, 1}, {0, -1}},
+            new int[][] {{1, 0}, {-1, 0}, {0, 1}, {0, -1}}),
+    EightConnected(false,
+            new int[][] {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}},
+            new int[][] {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}}),
+    Hex(true,
+            new int[][] {{1, 0}, {-1, 0}, {0, -1}, {-1, -1}, {0, 1}, {-1, 1}},
+            new int[][] {{1, 0}, {-1, 0}, {1, -1}, {0, -1}, {1, 1}, {0, 1}});
+
+    // the moves from the cells of one row
+    static final class Moves {
+        final int count;
+        final int[] dx, dy;
+        final double[] cost;
+        // true if the move is diagonal on a square grid: then the two cells next to both ends
+        // (x + dx, y and x, y + dy) must be free as well, so that it doesn't cut a corner
+        final boolean[] diagonal;
+
+        private Moves(int[][] offsets, boolean hex) {
+            count = offsets.length;
+            dx = new int[count];
+            dy = new int[count];
+            cost = new double[count];
+            diagonal = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                dx[i] = offsets[i][0];
+                dy[i] = offsets[i][1];
+                // neighbouring hexes share an edge, there are no corners to cut
+                diagonal[i] = !hex && dx[i] != 0 && dy[i] != 0;
+                cost[i] = diagonal[i] ? Math.sqrt(2) : 1;
+            }
+        }
+    }
+
+    private final boolean hex;
+    private final Moves even, odd;
+
+    Topology(boolean hex, int[][] even, int[][] odd) {
+        this.hex = hex;
+        this.even = new Moves(even, hex);
+        this.odd = new Moves(odd, hex);
+    }
+
+    public static Topology of(boolean allowDiagonals) {
+        return allowDiagonals ? EightConnected : FourConnected;
+    }
+
+    // the moves from a cell in row y
+    Moves moves(int y) {
+        return (y & 1) == 0 ? even : odd;
+    }
+
+    public boolean isHex() {
+        return hex;
+    }
+
+    // the topology used to label connected components: diagonal moves can't cut corners,
+    // so every one of them can be replaced by two orthogonal moves
+    public Topology getComponentTopology() {
+        return this == EightConnected ? FourConnected : this;
+    }
+
+    // estimate of the cost from x,y to the destination; the square topologies use the selected heuristic,
+    // on a hex grid the number of hexes in between is exact (if there are no walls) and is always used
+    public double estimate(Heuristic heuristic, int x, int y, int destinationX, int destinationY) {
+        if (!hex) {
+            return heuristic.estimate(x - destinationX, y - destinationY);
+        }
+        return hexDistance(x, y, destinationX, destinationY);
+    }
+
+    // cost of the cheapest path from x,y to the destination if there are no walls: Manhattan distance
+    // on a 4-connected grid, octile distance on an 8-connected one, the number of hexes on a hex grid.
+    // Never more than the true cost, and consistent, so it can guide any search that has to stay exact.
+    public double distance(int x, int y, int destinationX, int destinationY) {
+        double dx = Math.abs((double) x - destinationX);
+        double dy = Math.abs((double) y - destinationY);
+        switch (this) {
+            case FourConnected:
+                return dx + dy;
+            case EightConnected:
+                return Math.max(dx, dy) + (Math.sqrt(2) - 1) * Math.min(dx, dy);
+            default: // Hex
+                return hexDistance(x, y, destinationX, destinationY);
+        }
+    }
+
+    private static double hexDistance(int x, int y, int destinationX, int destinationY) {
+        // convert to axial coordinates, where the distance is easy to compute
+        long q = x - (y - (y & 1)) / 2;
+        long r = y;
+        long dq = q - (destinationX - (destinationY - (destinationY & 1)) / 2);
+        long dr = r - destinationY;
+        return (Math.abs(dq) + Math.abs(dr) + Math.abs(dq + dr)) / 2;
+    }
+}
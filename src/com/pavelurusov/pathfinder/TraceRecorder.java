@@ -0,0 +1,93 @@
+package com.pavelurusov.pathfinder;
+
+import java.io.*;
+
+/**
+ * Writes the events of a search into a compact binary log that can be replayed later
+ * with SearchTrace and TraceReplay.
+ *
+ * The log starts with the magic number "JPTR" and a version byte, followed by a header
+ * of varints: columns, rows, origin cell, destination cell, algorithm, heuristic and topology
+ * (version 1 had no topology, its searches were always on square grids).
+ * Then come the events. Every event is a varint holding the event type in its two lowest bits
+ * and the distance from the cell of the previous event (zigzag encoded) in the rest,
+ * so most events take a single byte. Open and re-parent events are followed by another varint,
+ * the distance from the cell to its predecessor (zigzag encoded).
+ */
+
+public class TraceRecorder implements SearchListener, Closeable {
+    static final int MAGIC = 0x4A505452; // "JPTR"
+    static final int VERSION = 2;
+
+    static final int OPEN = 0;
+    static final int SETTLE = 1;
+    static final int REPARENT = 2;
+
+    private final DataOutputStream out;
+    private long lastCell = 0;
+
+    public TraceRecorder(OutputStream out, int columns, int rows, Node origin, Node destination,
+                         Algorithm algorithm, Heuristic heuristic, Topology topology) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        writeVarint(columns);
+        writeVarint(rows);
+        writeVarint((long) origin.getY() * columns + origin.getX());
+        writeVarint((long) destination.getY() * columns + destination.getX());
+        writeVarint(algorithm.ordinal());
+        writeVarint(heuristic.ordinal());
+        writeVarint(topology.ordinal());
+    }
+
+    @Override
+    public void opened(long cell, long predecessor) {
+        write(OPEN, cell, predecessor);
+    }
+
+    @Override
+    public void settled(long cell) {
+        write(SETTLE, cell, cell);
+    }
+
+    @Override
+    public void reparented(long cell, long predecessor) {
+        write(REPARENT, cell, predecessor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void write(int type, long cell, long predecessor) {
+        try {
+            writeVarint((zigzag(cell - lastCell) << 2) | type);
+            if (type != SETTLE) {
+                writeVarint(zigzag(predecessor - cell));
+            }
+            lastCell = cell;
+        } catch (IOException e) {
+            // the listener methods can't throw checked exceptions
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 7 bits per byte, the highest bit is set on every byte except the last one
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    // maps small negative numbers to small positive ones: 0, -1, 1, -2, 2... -> 0, 1, 2, 3, 4...
+    static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
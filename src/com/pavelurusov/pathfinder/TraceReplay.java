@@ -0,0 +1,131 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replays a SearchTrace: rebuilds the state of the search (which cells are unsettled or settled,
+ * and their predecessors and G-costs) after any number of events.
+ * Moving forward applies the events one by one. Moving backward starts over from the beginning,
+ * which only takes a pass over a couple of arrays, so any point of the trace can be reached
+ * instantly without running the search again.
+ */
+
+public class TraceReplay {
+    public static final byte NONE = 0;
+    public static final byte UNSETTLED = 1;
+    public static final byte SETTLED = 2;
+
+    private final SearchTrace trace;
+    private final int columns;
+    private final byte[] status;
+    private final int[] predecessor;
+    private final double[] gCost;
+    private int position = 0; // number of events applied so far
+    private int current = -1; // the cell that was settled last
+
+    public TraceReplay(SearchTrace trace) {
+        this.trace = trace;
+        this.columns = trace.getColumns();
+        int cells = columns * trace.getRows();
+        status = new byte[cells];
+        predecessor = new int[cells];
+        gCost = new double[cells];
+    }
+
+    public SearchTrace getTrace() {
+        return trace;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public boolean isFinished() {
+        return position == trace.size();
+    }
+
+    // moves to the state after the given number of events
+    public void seek(int event) {
+        event = Math.max(0, Math.min(event, trace.size()));
+        if (event < position) {
+            Arrays.fill(status, NONE);
+            position = 0;
+            current = -1;
+        }
+        while (position < event) {
+            apply(position++);
+        }
+    }
+
+    public byte getStatus(int x, int y) {
+        return status[y * columns + x];
+    }
+
+    public double getGCost(int x, int y) {
+        return gCost[y * columns + x];
+    }
+
+    // the cell that was settled last, or null
+    public Node getCurrent() {
+        return current == -1 ? null : new Node(current % columns, current / columns);
+    }
+
+    // returns the path from origin to destination (both included)
+    // if the destination has been settled, an empty list otherwise
+    public List<Node> getPath() {
+        List<Node> path = new ArrayList<>();
+        Node destination = trace.getDestination();
+        int cell = destination.getY() * columns + destination.getX();
+        if (status[cell] != SETTLED) {
+            return path;
+        }
+        while (predecessor[cell] != cell) {
+            path.add(new Node(cell % columns, cell / columns));
+            cell = predecessor[cell];
+        }
+        path.add(new Node(cell % columns, cell / columns));
+        Collections.reverse(path);
+        return path;
+    }
+
+    private void apply(int event) {
+        int cell = trace.getCell(event);
+        switch (trace.getType(event)) {
+            case TraceRecorder.SETTLE:
+                status[cell] = SETTLED;
+                current = cell;
+                break;
+            case TraceRecorder.OPEN:
+                status[cell] = UNSETTLED;
+                // opening a cell also sets its predecessor
+                setPredecessor(cell, trace.getPredecessor(event));
+                break;
+            default: // re-parent
+                setPredecessor(cell, trace.getPredecessor(event));
+                break;
+        }
+    }
+
+    private void setPredecessor(int cell, int parent) {
+        predecessor[cell] = parent;
+        gCost[cell] = parent == cell ? 0 : gCost[parent] + cost(parent, cell);
+    }
+
+    // the step cost of the trace's topology if the cells are neighbours,
+    // otherwise a shortcut of an any-angle search, which costs the straight line distance
+    private double cost(int from, int to) {
+        int dx = to % columns - from % columns;
+        int dy = to / columns - from / columns;
+        Topology.Moves moves = trace.getTopology().moves(from / columns);
+        for (int i = 0; i < moves.count; i++) {
+            if (moves.dx[i] == dx && moves.dy[i] == dy) {
+                return moves.cost[i];
+            }
+        }
+        // doubles, so that the squares don't overflow on huge maps
+        return Math.sqrt((double) dx * dx + (double) dy * dy);
+    }
+}
@@ -0,0 +1,59 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A map that is edited while searches are running on it, for example in a service where
+ * map updates and queries keep arriving at the same time.
+ * Edits are made to a private working copy and then published as a new version: a read-only
+ * snapshot of the TiledMap, which shares every tile that didn't change with the previous versions.
+ * Searches take the current version and run on it without locking, so they never wait for
+ * an edit and never see half of one. Writers take turns, and each update is published atomically.
+ */
+
+public class VersionedMap {
+    private final TiledMap working;
+    private final AtomicReference<TiledMap> current;
+
+    public VersionedMap(int columns, int rows) {
+        this(new TiledMap(columns, rows));
+    }
+
+    // the map becomes the working copy and mustn't be edited directly any more
+    public VersionedMap(TiledMap map) {
+        working = map;
+        current = new AtomicReference<>(map.snapshot());
+    }
+
+    // the latest published version, never blocks
+    public TiledMap current() {
+        return current.get();
+    }
+
+    public long getVersion() {
+        return current.get().getVersion();
+    }
+
+    // applies a batch of edits to the working copy and publishes them as a single version,
+    // returns the version that searches will see from now on
+    public synchronized TiledMap update(Consumer<TiledMap> edits) {
+        long version = working.getVersion();
+        try {
+            edits.accept(working);
+        } finally {
+            // whatever was done before an exception is published as well, the working copy can't be rolled back
+            if (working.getVersion() != version) {
+                current.set(working.snapshot());
+            }
+        }
+        return current.get();
+    }
+
+    // blocks or unblocks one cell and publishes the change, returns true if anything changed
+    public boolean setBlocked(int x, int y, boolean blocked) {
+        boolean[] changed = new boolean[1];
+        update(map -> changed[0] = map.setBlocked(x, y, blocked));
+        return changed[0];
+    }
+}
@@ -0,0 +1,45 @@
+package com.pavelurusov.pathfinder;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Regression checks for CooperativePlanner, run with assertions enabled (java -ea).
+ * No two agents may ever share a cell or swap places.
+ */
+
+public class CooperativePlannerTest {
+
+    public static void main(String[] args) {
+        corridor();
+        System.out.println("CooperativePlannerTest: OK");
+    }
+
+    // agent 0 wants to get through agent 1 in a corridor that is too narrow to pass,
+    // the agent with the higher priority must not plan through the one that's waiting
+    private static void corridor() {
+        GridMap map = new TiledMap(3, 1);
+        List<Node> origins = Arrays.asList(new Node(0, 0), new Node(1, 0));
+        List<Node> destinations = Arrays.asList(new Node(2, 0), new Node(0, 0));
+        List<List<Node>> paths = new CooperativePlanner(map, true, 4).plan(origins, destinations, 20);
+        assertNoConflicts(paths);
+    }
+
+    static void assertNoConflicts(List<List<Node>> paths) {
+        int steps = paths.get(0).size();
+        for (int t = 0; t < steps; t++) {
+            for (int i = 0; i < paths.size(); i++) {
+                for (int j = i + 1; j < paths.size(); j++) {
+                    Node a = paths.get(i).get(t);
+                    Node b = paths.get(j).get(t);
+                    if (a.equals(b)) {
+                        throw new AssertionError("Agents " + i + " and " + j + " collide at step " + t);
+                    }
+                    if (t > 0 && a.equals(paths.get(j).get(t - 1)) && b.equals(paths.get(i).get(t - 1))) {
+                        throw new AssertionError("Agents " + i + " and " + j + " swap places at step " + t);
+                    }
+                }
+            }
+        }
+    }
+}